@@ -3,6 +3,7 @@ package org.muizenhol.alfen;
 import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithDefault;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.Set;
 
@@ -10,6 +11,12 @@ import java.util.Set;
 public interface AlfenConfig {
     Set<Device> devices();
 
+    /**
+     * Max random delay added to the poll phase of each device. The phases are spread evenly over the interval anyway.
+     */
+    @WithDefault("PT0s")
+    Duration pollJitter();
+
     interface Device {
         String endpoint();
 
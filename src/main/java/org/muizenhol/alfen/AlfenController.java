@@ -23,6 +23,7 @@ public class AlfenController {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private static final List<String> CATEGORIES = List.of("meter1", "temp", "generic2");
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(5);
     @Inject
     ObjectMapper objectMapper;
 
@@ -38,7 +39,7 @@ public class AlfenController {
     private Properties ids;
     private Map<String, AlfenConnection> devices = Collections.emptyMap();
     boolean init = false;
-    private long timerId;
+    private final List<Long> timerIds = new ArrayList<>();
 
     public void start() {
         if (init) {
@@ -66,14 +67,21 @@ public class AlfenController {
                 .collect(Collectors.toMap(AlfenConfig.Device::name,
                         d -> new AlfenConnection(d, objectMapper)));
 
-        timerId = vertx.setPeriodic(100, Duration.ofSeconds(5).toMillis(),
-                e -> deviceConfig.forEach(
-                        device -> CATEGORIES.forEach(
-                                category -> poll(device, category))));
+        //every device/category gets its own phase in the interval
+        int count = deviceConfig.size() * CATEGORIES.size();
+        int index = 0;
+        for (AlfenConfig.Device device : deviceConfig) {
+            for (String category : CATEGORIES) {
+                Duration offset = PollPhase.offset(index++, count, POLL_INTERVAL, alfenConfig.pollJitter());
+                timerIds.add(vertx.setPeriodic(100 + offset.toMillis(), POLL_INTERVAL.toMillis(),
+                        e -> poll(device, category)));
+            }
+        }
     }
 
     public void stop() {
-        vertx.cancelTimer(timerId);
+        timerIds.forEach(vertx::cancelTimer);
+        timerIds.clear();
         devices.clear();
         init = false;
     }
@@ -4,11 +4,11 @@ import com.digitalpetri.modbus.client.ModbusTcpClient;
 import io.vertx.core.Vertx;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,16 +28,20 @@ public class AlfenModbus {
     @Inject
     MqttHandler mqttListener;
 
+    @Inject
+    GridPowerService gridPowerService;
+
     @Inject
     WriterConfig writerConfig;
 
     @Inject
-    Vertx vertx;
+    ModbusConfig modbusConfig;
 
-    @ConfigProperty(name = "modbus.write_enabled", defaultValue = "false")
-    boolean writeEnabled;
+    @Inject
+    Vertx vertx;
 
     final Map<String, AlfenModbusClient> clients = new HashMap<>();
+    private ModbusTransportResources transportResources;
 
     private record SetState(boolean enabled, float maxCurrent) {
     }
@@ -57,14 +61,23 @@ public class AlfenModbus {
                 .map(e -> e.name() + ": " + e.endpoint())
                 .collect(Collectors.toList()));
 
-        deviceConfigs.forEach(deviceConfig -> clients.put(deviceConfig.name(),
-                new AlfenModbusClient(vertx, deviceConfig, writeEnabled, mqttPublisher, mqttListener, writerConfig)));
+        transportResources = new ModbusTransportResources(vertx, modbusConfig.transport().eventLoopThreads());
+        for (int i = 0; i < deviceConfigs.size(); i++) {
+            AlfenConfig.Device deviceConfig = deviceConfigs.get(i);
+            Duration pollOffset = PollPhase.offset(i, deviceConfigs.size(), modbusConfig.poll().interval(), alfenConfig.pollJitter());
+            clients.put(deviceConfig.name(),
+                    new AlfenModbusClient(vertx, deviceConfig, transportResources, pollOffset, modbusConfig.writeEnabled(), mqttPublisher, mqttListener, gridPowerService, writerConfig, modbusConfig));
+        }
 
     }
 
     public void stop() {
         clients.forEach((name, client) -> client.close());
         clients.clear();
+        if (transportResources != null) {
+            transportResources.close();
+            transportResources = null;
+        }
     }
 
 }
@@ -17,12 +17,20 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -36,55 +44,145 @@ public class AlfenModbusClient implements AutoCloseable {
     private final MqttPublisher mqttPublisher;
     private final boolean writeEnabled;
     private final WriterConfig writerConfig;
+    private final ModbusConfig modbusConfig;
     private final MqttHandler mqttListener;
+    private final GridPowerService gridPower;
+    private final PollScheduler scheduler;
+    private final ReadPlanner planner;
+    private final DeviceExecutor executor;
+    private final PollDriver pollDriver;
+    private long statsTimer = -1;
     private final Map<Integer, AlfenModbusWriter> writers = new HashMap<>();
     private long readCount = 0;
     private int errorCount = 0;
 
+    /**
+     * Number of sockets, as read from the station status. -1 if not known yet.
+     */
+    private int nrOfSockets = -1;
+
     /**
      * States to set/write. Indexed per socket.
      */
-    private final Map<Integer, SetState> setStates = new HashMap<>();
+    private final Map<Integer, SetState> setStates = new ConcurrentHashMap<>();
+
+    /**
+     * A writeData is queued on the executor and didn't start yet. It writes the latest states, so one is enough.
+     */
+    private final AtomicBoolean writePending = new AtomicBoolean();
 
     /**
-     * Last state read. Indexed per socket
+     * Last measurement and state read. Indexed per socket.
+     * Replaced as a whole after every poll cycle, so it can be read without holding the poll lock.
      */
-    private final Map<Integer, Map<Integer, Object>> socketStatus = new HashMap<>();
+    private final AtomicReference<Map<Integer, SocketSnapshot>> sockets = new AtomicReference<>(Map.of());
+    private long sequence = 0;
 
     /**
-     * Last socket measurement read. Indexed per socket
+     * Decoded values, reused on every read. Indexed per unit id and group.
      */
-    private final Map<Integer, Map<Integer, Object>> socketMeasurement = new HashMap<>();
+    private final Map<Integer, Map<ModbusConst.Group, GroupValues>> values = new HashMap<>();
 
 
+    /**
+     * Groups read on {@link ModbusConst#ADDR_GENERIC}
+     */
+    private static final List<ModbusConst.Group> GENERIC_GROUPS =
+            List.of(ModbusConst.PRODUCT_IDENTIFICATION, ModbusConst.STATION_STATUS);
+
+    /**
+     * Groups read once per socket
+     */
+    private static final List<ModbusConst.Group> SOCKET_GROUPS =
+            List.of(ModbusConst.SOCKET_MEASUREMENT, ModbusConst.STATUS);
+
+    /**
+     * Group the Home Assistant discovery points at. Its json document is published in every output mode.
+     */
+    private static final ModbusConst.Group DISCOVERY_GROUP = ModbusConst.SOCKET_MEASUREMENT;
+
     private record SetState(boolean enabled, float maxCurrent, int numPhases) {
     }
 
-    AlfenModbusClient(Vertx vertx, String name, ModbusTcpClient client, boolean writeEnabled, MqttPublisher mqttPublisher, MqttHandler mqttListener, WriterConfig writerConfig) {
+    /**
+     * @param nanos {@link System#nanoTime()} just before the write was sent
+     */
+    private record WrittenValue(float value, long nanos) {
+    }
+
+    /**
+     * Last values written, to skip writes that don't change anything. Indexed per socket, only used in writeData.
+     */
+    private final Map<Integer, WrittenValue> writtenMaxCurrent = new HashMap<>();
+    private final Map<Integer, WrittenValue> writtenNumPhases = new HashMap<>();
+
+    /**
+     * Min delay between two keep-alive checks of a socket
+     */
+    private static final long KEEP_ALIVE_MIN_DELAY = 1000;
+
+    /**
+     * @param dueNanos {@link System#nanoTime()} at which the timer fires
+     */
+    private record KeepAlive(long timerId, long dueNanos) {
+    }
+
+    /**
+     * Pending keep-alive timer per socket. Guarded by this.
+     */
+    private final Map<Integer, KeepAlive> keepAlives = new HashMap<>();
+
+    /**
+     * Highest valid time read per socket, used as the valid time of a write that wasn't read back yet. Guarded by this.
+     */
+    private final Map<Integer, Long> validTimes = new HashMap<>();
+    private boolean closed = false;
+
+    AlfenModbusClient(Vertx vertx, String name, ModbusTcpClient client, boolean writeEnabled, MqttPublisher mqttPublisher, MqttHandler mqttListener, GridPowerService gridPower, WriterConfig writerConfig, ModbusConfig modbusConfig) {
         this.vertx = vertx;
         this.client = client;
         this.name = name;
         this.mqttPublisher = mqttPublisher;
         this.mqttListener = mqttListener;
+        this.gridPower = gridPower;
         this.writeEnabled = writeEnabled;
         this.writerConfig = writerConfig;
+        this.modbusConfig = modbusConfig;
+        this.scheduler = new PollScheduler(modbusConfig.poll());
+        this.planner = new ReadPlanner(modbusConfig.maxRegisterGap());
+        this.executor = DeviceExecutor.create(vertx, name, modbusConfig.executor());
+        this.pollDriver = new PollDriver(vertx, name, modbusConfig.poll().interval(), modbusConfig.poll().overrunPolicy(),
+                executor, this::poll);
     }
 
-    public AlfenModbusClient(Vertx vertx, AlfenConfig.Device deviceConfig, boolean writeEnabled, MqttPublisher mqttPublisher, MqttHandler mqttListener, WriterConfig writerConfig) {
-        this(vertx, deviceConfig.name(), createClient(deviceConfig), writeEnabled, mqttPublisher, mqttListener, writerConfig);
-        start(true);
+    /**
+     * @param pollOffset delay of the first poll, see {@link PollPhase}
+     */
+    AlfenModbusClient(Vertx vertx, AlfenConfig.Device deviceConfig, ModbusTransportResources transportResources, Duration pollOffset, boolean writeEnabled, MqttPublisher mqttPublisher, MqttHandler mqttListener, GridPowerService gridPower, WriterConfig writerConfig, ModbusConfig modbusConfig) {
+        this(vertx, deviceConfig.name(), createClient(deviceConfig.endpoint(), deviceConfig.port(), transportResources), writeEnabled, mqttPublisher, mqttListener, gridPower, writerConfig, modbusConfig);
+        start(true, pollOffset);
     }
 
-    private static ModbusTcpClient createClient(AlfenConfig.Device deviceConfig) {
+    /**
+     * Creates a client on the shared event loop group.
+     * Responses are completed on the event loop as well, the blocking calls run on the {@link DeviceExecutor}.
+     */
+    static ModbusTcpClient createClient(String endpoint, int port, ModbusTransportResources transportResources) {
         var transport = NettyTcpClientTransport.create(cfg -> {
-            cfg.hostname = deviceConfig.endpoint();
-            cfg.port = deviceConfig.port();
+            cfg.hostname = endpoint;
+            cfg.port = port;
+            cfg.eventLoopGroup = transportResources.eventLoopGroup();
+            cfg.executor = transportResources.eventLoopGroup();
         });
 
         return ModbusTcpClient.create(transport);
     }
 
     void start(boolean pollEnabled) {
+        start(pollEnabled, Duration.ZERO);
+    }
+
+    private void start(boolean pollEnabled, Duration pollOffset) {
         try {
             client.connect();
             sendDiscovery();
@@ -94,7 +192,12 @@ public class AlfenModbusClient implements AutoCloseable {
         }
 
         if (pollEnabled) {
-            vertx.setPeriodic(0, Duration.ofSeconds(1).toMillis(), this::poll);
+            pollDriver.start(pollOffset);
+            long statsInterval = modbusConfig.poll().statsInterval().toMillis();
+            statsTimer = vertx.setPeriodic(statsInterval, statsInterval, l -> {
+                mqttPublisher.sendStats(name, pollDriver.stats());
+                writers.forEach((socket, writer) -> mqttPublisher.sendWriterStats(name, socket, writer.stats()));
+            });
 //            if (writeEnabled) {
 //                LOG.info("Startup: write enabled");
 //                vertx.setPeriodic(0, Duration.ofSeconds(10).toMillis(), this::pollWrite);
@@ -106,6 +209,10 @@ public class AlfenModbusClient implements AutoCloseable {
 
     @Override
     public void close() {
+        pollDriver.close();
+        if (statsTimer >= 0) {
+            vertx.cancelTimer(statsTimer);
+        }
         try {
             client.disconnect();
         } catch (ModbusExecutionException e) {
@@ -113,33 +220,40 @@ public class AlfenModbusClient implements AutoCloseable {
         }
         writers.values().forEach(AlfenModbusWriter::close);
         writers.clear();
+        synchronized (this) {
+            closed = true;
+            keepAlives.values().forEach(keepAlive -> vertx.cancelTimer(keepAlive.timerId()));
+            keepAlives.clear();
+        }
+        executor.close();
     }
 
     public String getName() {
         return name;
     }
 
-    private void poll(long l) {
+    private void poll() {
         LOG.debug("Polling...");
-        vertx.executeBlocking(() -> {
-            try {
-                pollRead();
-                readCount++;
-                errorCount = 0;
-            } catch (Exception e) {
-                errorCount++;
-                LOG.warn("Error polling of modbus client", e);
-                if (errorCount > 3) {
-                    LOG.error("3 times in a row a read error, quitting");
-                    Quarkus.asyncExit(100);
-                }
+        try {
+            pollRead();
+            readCount++;
+            errorCount = 0;
+        } catch (Exception e) {
+            errorCount++;
+            LOG.warn("Error polling of modbus client", e);
+            if (errorCount > 3) {
+                LOG.error("3 times in a row a read error, quitting");
+                Quarkus.asyncExit(100);
             }
-            return null;
-        });
+        }
+    }
+
+    public PollStats getPollStats() {
+        return pollDriver.stats();
     }
 
     void pollRead() {
-        readData();
+        notifyWriters(readData());
     }
 
 //    private void pollWrite(long l) {
@@ -152,125 +266,270 @@ public class AlfenModbusClient implements AutoCloseable {
 //        });
 //    }
 
-    private synchronized void readData() {
-        readData(ModbusConst.PRODUCT_IDENTIFICATION, ModbusConst.ADDR_GENERIC, true);
-        readData(ModbusConst.STATION_STATUS, ModbusConst.ADDR_GENERIC, true).ifPresent(values -> {
-            Object nrOfSockets = values.get(ModbusConst.ID_NR_OF_SOCKETS);
-            if (nrOfSockets != null) {
-                int nrOfSocketsInt = (int) nrOfSockets;
-                LOG.debug("NrOfSockets: {}", nrOfSocketsInt);
-                for (int i = 1; i <= nrOfSocketsInt; ++i) {
-                    final int socket = i;
-                    readData(ModbusConst.SOCKET_MEASUREMENT, i, true)
-                            .ifPresent(s -> socketMeasurement.put(socket, s));
-                    readData(ModbusConst.STATUS, i, true)
-                            .ifPresent(s -> socketStatus.put(socket, s));
-                }
-            } else {
-                LOG.warn("Can't fetch number of sockets. Got null");
+    /**
+     * @return sockets of which the measurement was read
+     */
+    private synchronized List<Integer> readData() {
+        scheduler.startCycle();
+        List<ModbusConst.Group> generic = new ArrayList<>(GENERIC_GROUPS.size());
+        for (ModbusConst.Group group : GENERIC_GROUPS) {
+            //number of sockets is always needed when not known yet
+            if (scheduler.isDue(group, ModbusConst.ADDR_GENERIC)
+                    || (group == ModbusConst.STATION_STATUS && nrOfSockets < 0)) {
+                generic.add(group);
             }
-        });
-    }
+        }
+        List<ReadPlanner.Read> reads = new ArrayList<>(planner.plan(ModbusConst.ADDR_GENERIC, generic));
+        boolean socketsPlanned = nrOfSockets >= 0;
+        if (socketsPlanned) {
+            reads.addAll(planSockets());
+        }
+        Map<Integer, Map<ModbusConst.Group, GroupValues>> read = readScheduled(reads);
+        Optional.ofNullable(read.getOrDefault(ModbusConst.ADDR_GENERIC, Map.of()).get(ModbusConst.STATION_STATUS))
+                .ifPresent(this::updateNrOfSockets);
+        if (nrOfSockets < 0) {
+            LOG.warn("Can't fetch number of sockets. Got null");
+            return List.of();
+        }
+        if (!socketsPlanned) {
+            read.putAll(readScheduled(planSockets()));
+        }
 
-    private Optional<Map<Integer, Object>> readData(ModbusConst.Group group, int unitId, boolean writeMqtt) {
-        try {
-            LOG.debug("Reading group: {}", group.startOffset());
-            ReadHoldingRegistersResponse response = client.readHoldingRegisters(
-                    unitId,
-                    new ReadHoldingRegistersRequest(group.startOffset(), group.size())
-            );
-            LOG.debug("ReadHoldingRegistersResponse: {} -- {}", response.registers().length, response.getFunctionCode());
-            ByteBuffer buf = ByteBuffer.wrap(response.registers());
-            Map<Integer, Object> values = group.items().stream()
-                    .collect(Collectors.toMap(ModbusConst.Item::start, i -> convert(i, buf, group)));
-            mqttPublisher.sendModbus(name, group.name(), values, unitId);
+        Map<Integer, SocketSnapshot> current = sockets.get();
+        Map<Integer, SocketSnapshot> next = null;
+        List<Integer> measured = new ArrayList<>();
+        List<Integer> statusRead = new ArrayList<>();
+        for (int socket = 1; socket <= nrOfSockets; ++socket) {
+            Map<ModbusConst.Group, GroupValues> socketRead = read.get(socket);
+            if (socketRead == null) {
+                continue;
+            }
+            SocketSnapshot snapshot = current.get(socket);
+            if (snapshot == null) {
+                snapshot = SocketSnapshot.empty(socket);
+            }
+            long now = System.nanoTime();
+            sequence++;
+            GroupValues measurement = socketRead.get(ModbusConst.SOCKET_MEASUREMENT);
+            if (measurement != null) {
+                snapshot = snapshot.withMeasurement(measurement, sequence, now);
+                measured.add(socket);
+            }
+            GroupValues status = socketRead.get(ModbusConst.STATUS);
+            if (status != null) {
+                snapshot = snapshot.withStatus(status, sequence, now);
+                validTimes.merge(socket, snapshot.validTime(), Math::max);
+                statusRead.add(socket);
+                //measure at full rate only while charging
+                scheduler.setInterval(ModbusConst.SOCKET_MEASUREMENT, socket, snapshot.isCharging()
+                        ? modbusConfig.poll().socketMeasurement()
+                        : modbusConfig.poll().socketMeasurementIdle());
+            }
+            if (next == null) {
+                next = new HashMap<>(current);
+            }
+            next.put(socket, snapshot);
+        }
+        if (next != null) {
+            //copy-on-write, readers always see a consistent set
+            sockets.set(Collections.unmodifiableMap(next));
+        }
+        //the valid time may have dropped, e.g. when the charger restarted
+        statusRead.forEach(this::scheduleKeepAlive);
+        return measured;
+    }
 
-            return Optional.of(values);
+    /**
+     * Passes the new measurements to the writers. Not under the poll lock, the writers call back into the client.
+     */
+    private void notifyWriters(List<Integer> measured) {
+        Map<Integer, SocketSnapshot> current = sockets.get();
+        for (int socket : measured) {
+            AlfenModbusWriter writer = writers.get(socket);
+            if (writer != null) {
+                writer.onMeasurement(Math.round(current.get(socket).realPowerSum()));
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            LOG.warn("Error reading data", e);
+    private List<ReadPlanner.Read> planSockets() {
+        List<ReadPlanner.Read> reads = new ArrayList<>();
+        for (int socket = 1; socket <= nrOfSockets; ++socket) {
+            reads.addAll(planner.plan(socket, dueGroups(socket, SOCKET_GROUPS)));
         }
-        return Optional.empty();
+        return reads;
     }
 
-    private Object convert(ModbusConst.Item item, ByteBuffer buf, ModbusConst.Group group) {
-        return switch (item.type()) {
-            case STRING -> readString(buf, item.start() - group.startOffset(), item.size(), item.name());
-            case FLOAT32 -> readFloat(buf, item.start() - group.startOffset(), item.name());
-            case FLOAT64 -> readDouble(buf, item.start() - group.startOffset(), item.name());
-            case SIGNED16 -> readShort(buf, item.start() - group.startOffset(), item.name());
-            case UNSIGNED16 -> readShortUnsigned(buf, item.start() - group.startOffset(), item.name());
-            //note: unsigned64 is not correct, but chances of having such a big value is slim
-            case UNSIGNED32, UNSIGNED64 -> readIntUnsigned(buf, item.start() - group.startOffset(), item.name());
-        };
+    private List<ModbusConst.Group> dueGroups(int unitId, List<ModbusConst.Group> groups) {
+        return groups.stream()
+                .filter(group -> scheduler.isDue(group, unitId))
+                .toList();
     }
 
-    private float readFloat(ByteBuffer buf, int i, String name) {
-        float f = buf.getFloat(i * 2);
-        LOG.debug("{}: {}: {}", i, name, f);
-        return f;
+    private Map<Integer, Map<ModbusConst.Group, GroupValues>> readScheduled(List<ReadPlanner.Read> reads) {
+        Map<Integer, Map<ModbusConst.Group, GroupValues>> read = readData(reads, true);
+        read.forEach((unitId, groups) -> groups.keySet().forEach(group -> scheduler.markRead(group, unitId)));
+        return read;
     }
 
-    private double readDouble(ByteBuffer buf, int i, String name) {
-        double d = buf.getDouble(i * 2);
-        LOG.debug("{}: {}: {}", i, name, d);
-        return d;
+    private void updateNrOfSockets(GroupValues stationStatus) {
+        nrOfSockets = (int) stationStatus.getLong(ModbusConst.ID_NR_OF_SOCKETS);
+        LOG.debug("NrOfSockets: {}", nrOfSockets);
     }
 
-    private short readShort(ByteBuffer buf, int i, String name) {
-        short s = buf.getShort(i * 2);
-        LOG.debug("{}: {}: {}", i, name, s);
-        return s;
+    private GroupValues values(ModbusConst.Group group, int unitId) {
+        return values.computeIfAbsent(unitId, u -> new IdentityHashMap<>())
+                .computeIfAbsent(group, g -> {
+                    GroupDecoder decoder = GroupDecoder.of(g);
+                    return new GroupValues(decoder, PublishPlan.modbus(name, unitId, decoder));
+                });
     }
 
-    private int readShortUnsigned(ByteBuffer buf, int i, String name) {
-        int us = buf.getShort(i * 2) & 0x0000ffff;
-        LOG.debug("{}: {}: {}", i, name, us);
-        return us;
+    private Optional<GroupValues> readData(ModbusConst.Group group, int unitId, boolean writeMqtt) {
+        return Optional.ofNullable(readData(planner.plan(unitId, List.of(group)), writeMqtt)
+                .getOrDefault(unitId, Map.of())
+                .get(group));
     }
 
-    private long readIntUnsigned(ByteBuffer buf, int i, String name) {
-        long ui = buf.getInt(i * 2) & 0x00000000ffffffffL;
-        LOG.debug("{}: {}: {}", i, name, ui);
-        return ui;
+    /**
+     * Executes the reads and decodes the groups in them.
+     * Groups are only published when their values moved past the deadband, or the heartbeat passed.
+     * Groups of a failed request are not part of the result, unchanged groups are.
+     *
+     * @return decoded groups, indexed per unit id
+     */
+    private Map<Integer, Map<ModbusConst.Group, GroupValues>> readData(List<ReadPlanner.Read> reads, boolean writeMqtt) {
+        long heartbeat = modbusConfig.publish().heartbeat().toNanos();
+        boolean deadband = modbusConfig.publish().deadband();
+        ModbusConfig.Output output = modbusConfig.publish().output();
+        List<byte[]> responses = modbusConfig.maxInFlight() > 1 ? executeAsync(reads) : execute(reads);
+        Map<Integer, Map<ModbusConst.Group, GroupValues>> result = new HashMap<>();
+        for (int i = 0; i < reads.size(); i++) {
+            byte[] response = responses.get(i);
+            if (response == null) {
+                continue;
+            }
+            ReadPlanner.Read read = reads.get(i);
+            ByteBuffer registers = ByteBuffer.wrap(response);
+            for (ModbusConst.Group group : read.groups()) {
+                GroupValues groupValues = values(group, read.unitId());
+                boolean changed = groupValues.decode(registers.slice(read.byteOffset(group), ReadPlanner.span(group) * 2));
+                long now = System.nanoTime();
+                boolean heartbeatDue = now - groupValues.publishedNanos() >= heartbeat;
+                if ((output != ModbusConfig.Output.ITEM || group == DISCOVERY_GROUP)
+                        && (heartbeatDue || (changed && (!deadband || groupValues.exceedsDeadband())))) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Unit {}: {}", read.unitId(), groupValues);
+                    }
+                    mqttPublisher.sendModbus(groupValues.plan().topic(), groupValues);
+                    groupValues.markPublished(now);
+                }
+                if (output != ModbusConfig.Output.GROUP && (heartbeatDue || changed)) {
+                    publishItems(groupValues, heartbeatDue, deadband);
+                    if (heartbeatDue) {
+                        groupValues.markPublished(now);
+                    }
+                }
+                result.computeIfAbsent(read.unitId(), u -> new IdentityHashMap<>()).put(group, groupValues);
+            }
+        }
+        return result;
     }
 
-    private String readString(ByteBuffer buf, int i, int length, String name) {
-        //LOG.info("Decoding string from {} size {}", i * 2, length * 2);
+    /**
+     * Publishes the changed items of the group on their own topic.
+     *
+     * @param all publish all items, changed or not
+     */
+    private void publishItems(GroupValues groupValues, boolean all, boolean deadband) {
+        for (int i = 0; i < groupValues.size(); i++) {
+            if (all || groupValues.itemChanged(i, deadband)) {
+                mqttPublisher.sendModbusItem(groupValues.plan().itemTopics().get(i), groupValues.format(i));
+                groupValues.markItemPublished(i);
+            }
+        }
+    }
 
-        CharBuffer cb = StandardCharsets.UTF_8.decode(buf.slice(i * 2, length * 2));
-        //it decodes the full buffer, leaving a string with a lot of null-terminates characters.
-        //so loop over the buffer to find the first nullbyte, and mark that as the buffer end
-        while (cb.hasRemaining()) {
-            char c = cb.get();
-            if (c == 0x0) {
-                cb.limit(cb.position() - 1);
+    /**
+     * Executes the reads one after the other.
+     *
+     * @return registers per read, in the same order. null if the read failed.
+     */
+    private List<byte[]> execute(List<ReadPlanner.Read> reads) {
+        List<byte[]> responses = new ArrayList<>(reads.size());
+        for (ReadPlanner.Read read : reads) {
+            try {
+                LOG.debug("Reading {} registers from {} (unit: {})", read.count(), read.address(), read.unitId());
+                ReadHoldingRegistersResponse response = client.readHoldingRegisters(
+                        read.unitId(),
+                        new ReadHoldingRegistersRequest(read.address(), read.count())
+                );
+                LOG.debug("ReadHoldingRegistersResponse: {} -- {}", response.registers().length, response.getFunctionCode());
+                responses.add(response.registers());
+            } catch (Exception e) {
+                LOG.warn("Error reading data", e);
+                responses.add(null);
             }
         }
-        cb.position(0);
-        String str = cb.toString();
-        LOG.debug("{}: {}: {}", i, name, str);
-        return str;
+        return responses;
     }
 
+    /**
+     * Executes the reads pipelined on the connection, keeping at most {@link ModbusConfig#maxInFlight()} requests outstanding.
+     * Responses are matched to their request by the modbus tcp transaction id.
+     *
+     * @return registers per read, in the same order. null if the read failed.
+     */
+    private List<byte[]> executeAsync(List<ReadPlanner.Read> reads) {
+        Semaphore inFlight = new Semaphore(modbusConfig.maxInFlight());
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(reads.size());
+        try {
+            for (ReadPlanner.Read read : reads) {
+                inFlight.acquire();
+                LOG.debug("Reading async {} registers from {} (unit: {})", read.count(), read.address(), read.unitId());
+                futures.add(client.readHoldingRegistersAsync(
+                                read.unitId(),
+                                new ReadHoldingRegistersRequest(read.address(), read.count()))
+                        .toCompletableFuture()
+                        .handle((response, e) -> {
+                            inFlight.release();
+                            if (e != null) {
+                                LOG.warn("Error reading data", e);
+                                return null;
+                            }
+                            return response.registers();
+                        }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(false));
+            throw new IllegalStateException("Interrupted while reading " + name, e);
+        }
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
 
-    void writeDataFloat(float value, ModbusTcpClient client, ModbusConst.Item item, int unitId) {
-        writeData(s -> {
+    boolean writeDataFloat(float value, ModbusTcpClient client, ModbusConst.Item item, int unitId) {
+        return writeData(s -> {
             s.putFloat(value);
             LOG.debug("Writing float item {} : {}", item.name(), value);
         }, client, item, unitId);
     }
 
-    private void writeDataUnsigned16(int value, ModbusTcpClient client, ModbusConst.Item item, int unitId) {
-        writeData(s -> {
+    private boolean writeDataUnsigned16(int value, ModbusTcpClient client, ModbusConst.Item item, int unitId) {
+        return writeData(s -> {
             s.putShort((short) value);
             LOG.debug("Writing unsigned16 item {} : {}", item.name(), value);
         }, client, item, unitId);
     }
 
-    private void writeData(Consumer<ByteBuffer> setter, ModbusTcpClient client, ModbusConst.Item item, int unitId) {
+    /**
+     * @return true if written
+     */
+    private boolean writeData(Consumer<ByteBuffer> setter, ModbusTcpClient client, ModbusConst.Item item, int unitId) {
         if (!writeEnabled) {
-            return;
+            return false;
         }
         try {
             int address = item.start();
@@ -279,16 +538,16 @@ public class AlfenModbusClient implements AutoCloseable {
             byte[] values = buf.array();
             if (values.length != item.size() * 2) {
                 LOG.warn("Buffer wrong while writing {} {}!={}", item.name(), values.length, item.size() * 2);
-                return;
+                return false;
             }
 
             LOG.debug("Wrinting to {} (unit: {}, size: {})", address, unitId, item.size() * 2);
             WriteMultipleRegistersResponse response = client.writeMultipleRegisters(unitId, new WriteMultipleRegistersRequest(address, item.size(), values));
             LOG.debug("WriteMultipleRegistersResponse: {}", response.getFunctionCode());
-
-
+            return true;
         } catch (Exception e) {
             LOG.warn("Error writing data", e);
+            return false;
         }
     }
 
@@ -296,17 +555,14 @@ public class AlfenModbusClient implements AutoCloseable {
         LOG.info("Generating discovery for {}", name);
 
 
-        int nrOfSockets = readData(ModbusConst.STATION_STATUS, ModbusConst.ADDR_GENERIC, false)
-                .flatMap(values -> Optional.ofNullable(values.get(ModbusConst.ID_NR_OF_SOCKETS)))
-                .map(x -> (int) x)
-                .orElse(-1);
+        readData(ModbusConst.STATION_STATUS, ModbusConst.ADDR_GENERIC, false).ifPresent(this::updateNrOfSockets);
         if (nrOfSockets == -1) {
             LOG.warn("Can't fetch number of sockets, can't publish discovery info for {}", name);
             return;
         }
 
-        String serial = (String) readData(ModbusConst.PRODUCT_IDENTIFICATION, ModbusConst.ADDR_GENERIC, false)
-                .flatMap(values -> Optional.ofNullable(values.get(ModbusConst.ID_STATION_SERIAL_NUMBER)))
+        String serial = readData(ModbusConst.PRODUCT_IDENTIFICATION, ModbusConst.ADDR_GENERIC, false)
+                .map(values -> values.getString(ModbusConst.ID_STATION_SERIAL_NUMBER))
                 .orElse(null);
         if (serial == null) {
             LOG.warn("Can't fetch serial number, can't publish discovery info for {}", name);
@@ -314,9 +570,9 @@ public class AlfenModbusClient implements AutoCloseable {
         }
 
         for (int s = 1; s <= nrOfSockets; s++) {
-            writers.put(s, new AlfenModbusWriter(vertx, this, name, s, mqttListener, writerConfig));
+            writers.put(s, new AlfenModbusWriter(vertx, this, name, s, mqttListener, gridPower, writerConfig));
 
-            Map<String, Component> components = ModbusConst.SOCKET_MEASUREMENT.items().stream()
+            Map<String, Component> components = DISCOVERY_GROUP.items().stream()
                     .filter(i -> i.discoveryInfo() != null)
                     .map(i -> new Sensor.Builder()
                             .withName(i.name())
@@ -340,7 +596,7 @@ public class AlfenModbusClient implements AutoCloseable {
                     , new Discovery.Origin(
                     "alfen-mqtt"
             ),
-                    "alfen/modbus/state/" + name + "/" + s + "/socket_measurement",
+                    values(DISCOVERY_GROUP, s).plan().topic(),
                     components
             );
             mqttPublisher.sendDiscovery(discovery);
@@ -353,52 +609,188 @@ public class AlfenModbusClient implements AutoCloseable {
 
 
     public void disable(int socket) {
-        if (Optional.ofNullable(setStates.get(socket)).map(SetState::enabled).isEmpty()) {
+        SetState state = setStates.get(socket);
+        if (state == null || state.enabled()) {
             LOG.info("Set socket {} to disabled", socket);
             setStates.put(socket, new SetState(false, 0, 1));
-
         }
-        writeData();
+        requestWrite();
     }
 
     public void setState(int socket, float maxCurrent, int numPhases) {
         LOG.info("Set socket {} to enabled, maxCurrent: {}, numPhases: {}", socket, maxCurrent, numPhases);
         setStates.put(socket, new SetState(true, maxCurrent, numPhases));
 
-        writeData();
+        requestWrite();
+    }
+
+    /**
+     * Queues a writeData, unless one is queued already.
+     * Keeps the executor queue bounded while the device is stalled.
+     */
+    private void requestWrite() {
+        if (writePending.compareAndSet(false, true)) {
+            executor.execute(this::writeData);
+        }
+    }
+
+    /**
+     * Last readings of the socket. Doesn't block on a running poll.
+     */
+    public Optional<SocketSnapshot> getSocket(int socket) {
+        return Optional.ofNullable(sockets.get().get(socket));
     }
 
-    public synchronized Optional<Integer> getSocketRealPowerSum(int socket) {
-        Map<Integer, Object> measure = socketMeasurement.get(socket);
-        if (measure == null) {
+    public Optional<Integer> getSocketRealPowerSum(int socket) {
+        SocketSnapshot snapshot = sockets.get().get(socket);
+        if (snapshot == null || !snapshot.hasMeasurement()) {
             return Optional.empty();
         }
-        return Optional.of(Math.round((Float) measure.get(ModbusConst.ITEM_REAL_POWER_SUM.start())));
+        return Optional.of(Math.round(snapshot.realPowerSum()));
     }
 
+    /**
+     * Writes the registers of which the requested value differs from the current one.
+     * The current value is the last one written, or the one of the last status read if that is more recent.
+     * Doesn't read, so a setting that didn't change costs no modbus transaction.
+     * The max current is written again when the status shows its valid time is about to run out.
+     */
     private synchronized void writeData() {
+        //states set from here on need a new write
+        writePending.set(false);
         if (!writeEnabled) {
             return;
         }
-        pollRead(); //update state
         setStates.forEach((socket, state) -> {
-            LOG.debug("Writing state for socket {} ({})", socket, state);
-            if (state.enabled) {
-                Map<Integer, Object> currentStatus = socketStatus.get(socket);
-                if (currentStatus == null) {
-                    LOG.warn("Current status for socket {} unknown", socket);
-                    return;
+            SocketSnapshot currentStatus = sockets.get().get(socket);
+            boolean hasStatus = currentStatus != null && currentStatus.hasStatus();
+            if (state.enabled && !hasStatus) {
+                LOG.warn("Current status for socket {} unknown", socket);
+                return;
+            }
+            float maxCurrent = state.enabled ? state.maxCurrent : 0;
+            WrittenValue current = current(writtenMaxCurrent.get(socket), currentStatus,
+                    hasStatus ? currentStatus.maxCurrent() : Float.NaN);
+            if (current == null || Float.compare(current.value(), maxCurrent) != 0 || expiring(current, currentStatus)) {
+                LOG.debug("Writing max current for socket {} ({})", socket, state);
+                long now = System.nanoTime();
+                if (writeDataFloat(maxCurrent, client, ModbusConst.ITEM_MAX_CURRENT, socket)) {
+                    writtenMaxCurrent.put(socket, new WrittenValue(maxCurrent, now));
                 }
-                writeDataFloat(state.maxCurrent, client, ModbusConst.ITEM_MAX_CURRENT, socket);
-                int numPhases = (int) currentStatus.get(ModbusConst.ITEM_NUM_PHASES.start());
-                if (numPhases != state.numPhases) {
-                    LOG.info("Changing number of phases to charge from {} to {}", numPhases, state.numPhases);
-                    writeDataUnsigned16(state.numPhases, client, ModbusConst.ITEM_NUM_PHASES, socket);
+            }
+            if (state.enabled) {
+                WrittenValue numPhases = current(writtenNumPhases.get(socket), currentStatus, currentStatus.numPhases());
+                if ((int) numPhases.value() != state.numPhases) {
+                    LOG.info("Changing number of phases to charge from {} to {}", (int) numPhases.value(), state.numPhases);
+                    long now = System.nanoTime();
+                    if (writeDataUnsigned16(state.numPhases, client, ModbusConst.ITEM_NUM_PHASES, socket)) {
+                        writtenNumPhases.put(socket, new WrittenValue(state.numPhases, now));
+                    }
                 }
-
-            } else {
-                writeDataFloat(0, client, ModbusConst.ITEM_MAX_CURRENT, socket);
             }
+            scheduleKeepAlive(socket);
         });
     }
+
+    /**
+     * Schedules the keep-alive of the socket just before its max current runs out, see {@link ModbusConfig#keepAliveMargin()}.
+     * A pending keep-alive is only moved when it is due earlier.
+     * Must hold the lock.
+     */
+    private void scheduleKeepAlive(int socket) {
+        //without a valid time the setting doesn't run out, or it can't be known when
+        if (closed || !writeEnabled || !setStates.containsKey(socket) || validTimes.getOrDefault(socket, 0L) == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long delay = Math.max(KEEP_ALIVE_MIN_DELAY, TimeUnit.NANOSECONDS.toMillis(keepAliveDue(socket) - now + 999_999));
+        long due = now + TimeUnit.MILLISECONDS.toNanos(delay);
+        KeepAlive pending = keepAlives.get(socket);
+        if (pending != null) {
+            if (pending.dueNanos() - due <= 0) {
+                return;
+            }
+            vertx.cancelTimer(pending.timerId());
+        }
+        long timerId = vertx.setTimer(delay, id -> executor.execute(() -> keepAlive(socket, id)));
+        keepAlives.put(socket, new KeepAlive(timerId, due));
+    }
+
+    /**
+     * Only call when a valid time was read for the socket.
+     *
+     * @return {@link System#nanoTime()} at which the max current of the socket must be written again
+     */
+    private long keepAliveDue(int socket) {
+        long margin = keepAliveMargin(socket);
+        SocketSnapshot status = sockets.get().get(socket);
+        WrittenValue written = writtenMaxCurrent.get(socket);
+        boolean statusNewer = status != null && status.hasStatus()
+                && (written == null || written.nanos() - status.statusNanos() < 0);
+        if (statusNewer && status.validTime() > 0) {
+            return status.statusNanos() + TimeUnit.SECONDS.toNanos(status.validTime()) - margin;
+        }
+        if (written != null) {
+            return written.nanos() + TimeUnit.SECONDS.toNanos(validTimes.get(socket)) - margin;
+        }
+        //not written yet, and the status shows the setting ran out
+        return System.nanoTime();
+    }
+
+    /**
+     * @return the configured margin, at most half of the highest valid time read, so writes stay spaced
+     */
+    private long keepAliveMargin(int socket) {
+        return Math.min(modbusConfig.keepAliveMargin().toNanos(),
+                TimeUnit.SECONDS.toNanos(validTimes.getOrDefault(socket, 0L)) / 2);
+    }
+
+    /**
+     * Writes the max current again when it is about to run out.
+     * A single register write of the requested value, without reading it first.
+     */
+    private synchronized void keepAlive(int socket, long timerId) {
+        KeepAlive pending = keepAlives.get(socket);
+        if (pending == null || pending.timerId() != timerId) {
+            //cancelled or moved
+            return;
+        }
+        keepAlives.remove(socket);
+        SetState state = setStates.get(socket);
+        if (state != null && validTimes.getOrDefault(socket, 0L) > 0 && keepAliveDue(socket) - System.nanoTime() <= 0) {
+            float maxCurrent = state.enabled ? state.maxCurrent : 0;
+            LOG.debug("Keep-alive of max current for socket {}: {}", socket, maxCurrent);
+            long now = System.nanoTime();
+            if (writeDataFloat(maxCurrent, client, ModbusConst.ITEM_MAX_CURRENT, socket)) {
+                writtenMaxCurrent.put(socket, new WrittenValue(maxCurrent, now));
+            }
+        }
+        scheduleKeepAlive(socket);
+    }
+
+    /**
+     * @param current value as returned by {@link #current(WrittenValue, SocketSnapshot, float)}
+     * @return true when the current value comes from the status read and its valid time runs out within the
+     * {@link #keepAliveMargin(int)}. A valid time of 0 is not known, and never expires.
+     */
+    private boolean expiring(WrittenValue current, SocketSnapshot status) {
+        if (status == null || !status.hasStatus() || current.nanos() != status.statusNanos() || status.validTime() == 0) {
+            return false;
+        }
+        long expiry = status.statusNanos() + TimeUnit.SECONDS.toNanos(status.validTime());
+        return expiry - keepAliveMargin(status.socket()) - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return the most recent of the written value and the value read in the status, null if neither is known
+     */
+    private static WrittenValue current(WrittenValue written, SocketSnapshot status, float statusValue) {
+        if (status == null || !status.hasStatus()) {
+            return written;
+        }
+        if (written != null && written.nanos() - status.statusNanos() >= 0) {
+            return written;
+        }
+        return new WrittenValue(statusValue, status.statusNanos());
+    }
 }
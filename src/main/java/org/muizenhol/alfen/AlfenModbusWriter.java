@@ -1,17 +1,15 @@
 package org.muizenhol.alfen;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.Context;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
-import java.time.Instant;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AlfenModbusWriter implements AutoCloseable {
 
@@ -19,17 +17,36 @@ public class AlfenModbusWriter implements AutoCloseable {
     private static final String KEY_MODE = "mode";
     private final AlfenModbusClient client;
     private final String chargerName;
-    private final PowerUsage powerUsage = new PowerUsage();
-    private final PowerUsage powerSolar = new PowerUsage();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long originNanos = System.nanoTime();
+    private final InputReading consumed = new InputReading(originNanos);
+    private final InputReading produced = new InputReading(originNanos);
+    /**
+     * Not used by the update, only tracked for the {@link WriterStats}
+     */
+    private final InputReading solar = new InputReading(originNanos);
+    private final InputReading socketPower = new InputReading(originNanos);
+    private final AtomicLong staleUpdates = new AtomicLong();
+    private volatile boolean stale = false;
     private final Vertx vertx;
-    private ChargeMode chargeMode = ChargeMode.OFF;
-    private final long timerId;
+    /**
+     * All updates run on this context, one after the other, whatever thread the input comes from
+     */
+    private final Context context;
+    private volatile ChargeMode chargeMode = ChargeMode.OFF;
+    /**
+     * Periodic timer in {@link WriterConfig.Trigger#TIMER} mode, staleness timer in {@link WriterConfig.Trigger#EVENT} mode.
+     * -1 if none.
+     */
+    private long timerId = -1;
+    /**
+     * Timer of an update postponed by the min spacing, -1 if none
+     */
+    private long pendingTimerId = -1;
+    private long lastUpdateNanos;
+    private boolean closed = false;
     private final int socket;
-    public static final String TOPIC_POWER_CONSUMED = "slimmelezer/sensor/power_consumed/state";
-    public static final String TOPIC_POWER_PRODUCED = "slimmelezer/sensor/power_produced/state";
-    public static final String TOPIC_SOLAR = "serialread/power";
-    public static final String TOPIC_SET = "alfen/set/+/+/+";
+    private final GridPowerService gridPower;
+    private final GridPowerService.Listener gridPowerListener = this::handleGridPower;
     private final WriterConfig config;
 
     public enum ChargeMode {
@@ -39,53 +56,117 @@ public class AlfenModbusWriter implements AutoCloseable {
         FAST
     }
 
-    private static class PowerUsage {
-        int produced = 0;
-        int consumed = 0;
-        Instant lastUpdate = Instant.EPOCH;
-    }
-
-    public AlfenModbusWriter(Vertx vertx, AlfenModbusClient client, String chargerName, int socket, MqttHandler mqttListener, WriterConfig writerConfig) {
+    public AlfenModbusWriter(Vertx vertx, AlfenModbusClient client, String chargerName, int socket, MqttHandler mqttListener, GridPowerService gridPower, WriterConfig writerConfig) {
         LOG.info("Creating AlfenModbusWriter for {} (socket {})", chargerName, socket);
         this.client = client;
         this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
         this.socket = socket;
         this.chargerName = chargerName;
         this.config = writerConfig;
-        // topic: alfen/set/<chargername>/<socket>/<key>
-        Pattern pattern = Pattern.compile("alfen/set/" + chargerName + "/(\\d+)/(.*)");
-
-        mqttListener.register(pattern, TOPIC_SET, this::handleMessage);
-        mqttListener.register(Pattern.compile(TOPIC_POWER_CONSUMED), TOPIC_POWER_CONSUMED, this::handlePowerConsumed);
-        mqttListener.register(Pattern.compile(TOPIC_POWER_PRODUCED), TOPIC_POWER_PRODUCED, this::handlePowerProduced);
-        mqttListener.register(Pattern.compile(TOPIC_SOLAR), TOPIC_SOLAR, this::handleSolar);
+        this.gridPower = gridPower;
+        mqttListener.register(topicSet(chargerName), this::handleMessage);
+        gridPower.addListener(gridPowerListener);
+        this.lastUpdateNanos = System.nanoTime() - writerConfig.minSpacing().toNanos();
         if (writerConfig.enabled()) {
-            timerId = vertx.setPeriodic(writerConfig.interval().toMillis(), this::update);
-        } else {
-            timerId = 0;
+            if (writerConfig.trigger() == WriterConfig.Trigger.EVENT) {
+                timerId = vertx.setTimer(writerConfig.interval().toMillis(), l -> runOnContext(this::runUpdate));
+            } else {
+                timerId = vertx.setPeriodic(writerConfig.interval().toMillis(), l -> runOnContext(() -> update(l)));
+            }
         }
     }
 
+    /**
+     * @return topic filter of the set messages of a charger: alfen/set/&lt;chargername&gt;/&lt;socket&gt;/&lt;key&gt;
+     */
+    static String topicSet(String chargerName) {
+        return "alfen/set/" + chargerName + "/+/+";
+    }
+
     @Override
     public void close() {
-        vertx.cancelTimer(timerId);
+        synchronized (this) {
+            closed = true;
+            if (timerId >= 0) {
+                vertx.cancelTimer(timerId);
+            }
+            if (pendingTimerId >= 0) {
+                vertx.cancelTimer(pendingTimerId);
+            }
+        }
+        gridPower.removeListener(gridPowerListener);
+    }
+
+    private void runOnContext(Runnable action) {
+        context.runOnContext(v -> action.run());
+    }
+
+    /**
+     * New input for the update, in {@link WriterConfig.Trigger#EVENT} mode it is recomputed,
+     * at most once per {@link WriterConfig#minSpacing()}. Can be called from any thread.
+     */
+    void trigger() {
+        if (!config.enabled() || config.trigger() != WriterConfig.Trigger.EVENT) {
+            return;
+        }
+        runOnContext(this::triggerUpdate);
+    }
+
+    private void triggerUpdate() {
+        synchronized (this) {
+            if (closed || pendingTimerId >= 0) {
+                //already an update coming
+                return;
+            }
+            long wait = config.minSpacing().toNanos() - (System.nanoTime() - lastUpdateNanos);
+            if (wait > 0) {
+                pendingTimerId = vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)), l -> runOnContext(() -> {
+                    synchronized (this) {
+                        pendingTimerId = -1;
+                    }
+                    runUpdate();
+                }));
+                return;
+            }
+        }
+        runUpdate();
+    }
+
+    /**
+     * Updates and restarts the staleness timer.
+     */
+    private void runUpdate() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            lastUpdateNanos = System.nanoTime();
+            if (timerId >= 0) {
+                vertx.cancelTimer(timerId);
+            }
+            timerId = vertx.setTimer(config.interval().toMillis(), l -> runOnContext(this::runUpdate));
+        }
+        update(0L);
     }
 
-    private void handleMessage(String topic, Matcher m, String payload) {
+    private void handleMessage(String topic, List<String> wildcards, Buffer buffer) {
+        String payload = buffer.toString();
 
         LOG.info("Handling msg");
         int socket;
         try {
-            socket = Integer.parseInt(m.group(1));
+            socket = Integer.parseInt(wildcards.get(0));
         } catch (NumberFormatException e) {
-            LOG.warn("Can't parse value as int on topic {}: {}", topic, m.group(1));
+            LOG.warn("Can't parse value as int on topic {}: {}", topic, wildcards.get(0));
             return;
         }
-        String key = m.group(2);
+        String key = wildcards.get(1);
         LOG.info("Incoming set message for {} ({}): {} -> {}", chargerName, socket, key, payload);
         if (key.equalsIgnoreCase(KEY_MODE)) {
             try {
                 chargeMode = ChargeMode.valueOf(payload.toUpperCase());
+                trigger();
 
             } catch (IllegalArgumentException e) {
                 LOG.warn("Unknown charge mode for {}: {}", topic, payload);
@@ -95,55 +176,40 @@ public class AlfenModbusWriter implements AutoCloseable {
         }
     }
 
-    private void handlePowerConsumed(String topic, Matcher matchedTopic, String payload) {
-        int power = (int) (Double.parseDouble(payload) * 1000);
-        LOG.debug("Received power consumed message: {} -- {}", payload, power);
-        synchronized (powerUsage) {
-            powerUsage.consumed = power;
-            powerUsage.lastUpdate = Instant.now();
-        }
-    }
-
-    private void handlePowerProduced(String topic, Matcher matchedTopic, String payload) {
-        int power = (int) (Double.parseDouble(payload) * 1000);
-        LOG.debug("Received power produced message: {} -- {}", payload, power);
-        synchronized (powerUsage) {
-            powerUsage.produced = power;
-            powerUsage.lastUpdate = Instant.now();
-        }
-    }
-
-    private void handleSolar(String topic, Matcher matchedTopic, String payload) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(payload);
-            double power = jsonNode.get("data").get("Power_real_1_3").asDouble();
-            LOG.debug("Received power solar message: {} -- {}", payload, power);
-            synchronized (powerSolar) {
-                powerSolar.produced = (int) power;
-                powerSolar.lastUpdate = Instant.now();
-            }
-        } catch (JsonProcessingException e) {
-            LOG.warn("Json parse exception", e);
+    private void handleGridPower(GridPowerService.Input input, int watt) {
+        long now = System.nanoTime();
+        switch (input) {
+            case CONSUMED -> consumed.set(watt, now);
+            case PRODUCED -> produced.set(watt, now);
+            case SOLAR -> solar.set(watt, now);
         }
+        trigger();
     }
 
     void update(Long aLong) {
         LOG.debug("update");
-        int powerGrid;
-        synchronized (powerUsage) {
-            powerGrid = powerUsage.produced - powerUsage.consumed;
+        //read once, it can change from the mqtt event loop
+        ChargeMode mode = chargeMode;
+        if (mode == ChargeMode.PV_ONLY || mode == ChargeMode.PV_AND_MIN) {
+            long now = System.nanoTime();
+            if (consumed.isStale(now, config.gridMaxAge().toMillis())
+                    || produced.isStale(now, config.gridMaxAge().toMillis())
+                    || socketPower.isStale(now, config.socketMaxAge().toMillis())) {
+                updateStale(mode);
+                return;
+            }
         }
-        Optional<Integer> chargerPowerConsumedOpt = client.getSocketRealPowerSum(socket);
-        if (chargerPowerConsumedOpt.isEmpty()) {
-            LOG.warn("No socket power measurement for socket {}", socket);
-            return;
+        if (stale) {
+            LOG.info("Inputs of {} (socket {}) are fresh again", chargerName, socket);
+            stale = false;
         }
-        int chargerPowerConsumed = chargerPowerConsumedOpt.get();
+        int powerGrid = produced.value() - consumed.value();
+        int chargerPowerConsumed = socketPower.value();
         int powerAvailable = powerGrid + chargerPowerConsumed;
         LOG.debug("Power grid: {}, consumed: {}, available: {}", powerGrid, chargerPowerConsumed, powerAvailable);
 
 
-        switch (chargeMode) {
+        switch (mode) {
             case OFF -> client.disable(socket);
             case PV_ONLY -> {
                 if (powerAvailable > 300) {
@@ -157,4 +223,37 @@ public class AlfenModbusWriter implements AutoCloseable {
             case FAST -> client.setState(socket, 6, 3);
         }
     }
-}
\ No newline at end of file
+
+    private void updateStale(ChargeMode mode) {
+        staleUpdates.incrementAndGet();
+        WriterConfig.StaleAction action = config.staleAction().orElse(mode == ChargeMode.PV_ONLY
+                ? WriterConfig.StaleAction.OFF
+                : WriterConfig.StaleAction.MIN_CURRENT);
+        if (!stale) {
+            LOG.warn("Inputs of {} (socket {}) are stale, falling back to {}", chargerName, socket, action);
+            stale = true;
+        }
+        switch (action) {
+            case HOLD -> {
+            }
+            case MIN_CURRENT -> client.setState(socket, config.minPower(), 1);
+            case OFF -> client.disable(socket);
+        }
+    }
+
+    /**
+     * New power measurement of the socket, in W.
+     */
+    void onMeasurement(int watt) {
+        socketPower.set(watt, System.nanoTime());
+        trigger();
+    }
+
+    WriterStats stats() {
+        long now = System.nanoTime();
+        long consumedAge = consumed.ageMillis(now);
+        long producedAge = produced.ageMillis(now);
+        long gridAge = consumedAge < 0 || producedAge < 0 ? -1 : Math.max(consumedAge, producedAge);
+        return new WriterStats(gridAge, solar.ageMillis(now), socketPower.ageMillis(now), staleUpdates.get(), stale);
+    }
+}
@@ -0,0 +1,63 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the blocking modbus calls of a single device, one after the other.
+ * Every device gets its own executor, so a stalled charger doesn't hold up the others.
+ */
+final class DeviceExecutor implements Executor, AutoCloseable {
+
+    public enum Mode {
+        /**
+         * A dedicated virtual thread per device.
+         */
+        VIRTUAL,
+        /**
+         * A vert.x worker pool of size 1 per device.
+         */
+        WORKER
+    }
+
+    private final ExecutorService executorService;
+    private final WorkerExecutor workerExecutor;
+
+    private DeviceExecutor(ExecutorService executorService, WorkerExecutor workerExecutor) {
+        this.executorService = executorService;
+        this.workerExecutor = workerExecutor;
+    }
+
+    static DeviceExecutor create(Vertx vertx, String name, Mode mode) {
+        return switch (mode) {
+            case VIRTUAL -> new DeviceExecutor(
+                    Executors.newSingleThreadExecutor(Thread.ofVirtual().name("modbus-" + name).factory()), null);
+            case WORKER -> new DeviceExecutor(null, vertx.createSharedWorkerExecutor("modbus-" + name, 1));
+        };
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (executorService != null) {
+            executorService.execute(task);
+        } else {
+            workerExecutor.executeBlocking(() -> {
+                task.run();
+                return null;
+            }, true);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        } else {
+            workerExecutor.close();
+        }
+    }
+}
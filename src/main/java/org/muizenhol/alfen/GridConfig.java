@@ -0,0 +1,35 @@
+package org.muizenhol.alfen;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.util.Optional;
+
+/**
+ * Where the grid power readings come from. An input that is not configured uses the built-in default of
+ * {@link GridPowerService}.
+ */
+@ConfigMapping(prefix = "grid")
+public interface GridConfig {
+
+    Optional<Source> consumed();
+
+    Optional<Source> produced();
+
+    Optional<Source> solar();
+
+    interface Source {
+        String topic();
+
+        /**
+         * JSON pointer to the value in the payload, e.g. "/data/power". Without pointer, the payload is a plain number.
+         */
+        Optional<String> pointer();
+
+        /**
+         * Factor to convert the value to W, e.g. 1000 for kW
+         */
+        @WithDefault("1")
+        double scale();
+    }
+}
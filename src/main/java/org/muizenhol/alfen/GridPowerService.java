@@ -0,0 +1,115 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Grid and solar power as published by the meters.
+ * Subscribes once and parses every message once, whatever the number of {@link AlfenModbusWriter}s listening.
+ */
+@ApplicationScoped
+public class GridPowerService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    public static final String TOPIC_POWER_CONSUMED = "slimmelezer/sensor/power_consumed/state";
+    public static final String TOPIC_POWER_PRODUCED = "slimmelezer/sensor/power_produced/state";
+    public static final String TOPIC_SOLAR = "serialread/power";
+
+    public enum Input {
+        /**
+         * Power taken from the grid
+         */
+        CONSUMED,
+        /**
+         * Power injected into the grid
+         */
+        PRODUCED,
+        /**
+         * Power produced by the solar panels
+         */
+        SOLAR
+    }
+
+    public interface Listener {
+        /**
+         * @param watt new reading of the input, in W
+         */
+        void onReading(Input input, int watt);
+    }
+
+    private record DefaultSource(String topic, Optional<String> pointer, double scale) implements GridConfig.Source {
+    }
+
+    private static final GridConfig.Source DEFAULT_CONSUMED = new DefaultSource(TOPIC_POWER_CONSUMED, Optional.empty(), 1000);
+    private static final GridConfig.Source DEFAULT_PRODUCED = new DefaultSource(TOPIC_POWER_PRODUCED, Optional.empty(), 1000);
+    private static final GridConfig.Source DEFAULT_SOLAR = new DefaultSource(TOPIC_SOLAR, Optional.of("/data/Power_real_1_3"), 1);
+
+    private final MqttHandler mqttHandler;
+    private final GridConfig gridConfig;
+    private final ObjectMapper objectMapper;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private boolean subscribed = false;
+
+    public GridPowerService(MqttHandler mqttHandler, GridConfig gridConfig, ObjectMapper objectMapper) {
+        this.mqttHandler = mqttHandler;
+        this.gridConfig = gridConfig;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return configured source of the input, or the default one
+     */
+    GridConfig.Source source(Input input) {
+        return switch (input) {
+            case CONSUMED -> gridConfig.consumed().orElse(DEFAULT_CONSUMED);
+            case PRODUCED -> gridConfig.produced().orElse(DEFAULT_PRODUCED);
+            case SOLAR -> gridConfig.solar().orElse(DEFAULT_SOLAR);
+        };
+    }
+
+    /**
+     * Subscribes to the meter topics on the first listener.
+     */
+    public synchronized void addListener(Listener listener) {
+        listeners.add(listener);
+        if (!subscribed) {
+            subscribed = true;
+            for (Input input : Input.values()) {
+                subscribe(input, source(input));
+            }
+        }
+    }
+
+    private void subscribe(Input input, GridConfig.Source source) {
+        PayloadExtractor extractor = source.pointer()
+                .map(pointer -> PayloadExtractor.pointer(objectMapper.getFactory(), pointer))
+                .orElseGet(PayloadExtractor::plain);
+        double scale = source.scale();
+        mqttHandler.register(source.topic(), (topic, wildcards, payload) -> handle(input, extractor, scale, payload));
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void handle(Input input, PayloadExtractor extractor, double scale, Buffer payload) {
+        double value = extractor.extract(payload);
+        if (Double.isNaN(value)) {
+            LOG.warn("Can't parse {} power: {}", input, payload);
+            return;
+        }
+        int power = (int) (value * scale);
+        LOG.debug("Received power {} message: {}", input, power);
+        for (Listener listener : listeners) {
+            listener.onReading(input, power);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decoder for the registers of a single {@link ModbusConst.Group}.
+ * Offsets and types of all items are resolved once, so decoding is a single loop without lookups or allocations.
+ */
+final class GroupDecoder {
+
+    private static final Map<ModbusConst.Group, GroupDecoder> DECODERS = new ConcurrentHashMap<>();
+
+    private final ModbusConst.Group group;
+    private final ModbusConst.DataType[] types;
+    private final int[] registers;
+    private final int[] byteOffsets;
+    private final int[] byteLengths;
+    private final SerializedString[] fieldNames;
+    private final ModbusConst.Item.Deadband[] deadbands;
+    private final String[] topicNames;
+
+    private GroupDecoder(ModbusConst.Group group) {
+        this.group = group;
+        List<ModbusConst.Item> items = group.items();
+        int size = items.size();
+        types = new ModbusConst.DataType[size];
+        registers = new int[size];
+        byteOffsets = new int[size];
+        byteLengths = new int[size];
+        fieldNames = new SerializedString[size];
+        deadbands = new ModbusConst.Item.Deadband[size];
+        topicNames = new String[size];
+        for (int i = 0; i < size; i++) {
+            ModbusConst.Item item = items.get(i);
+            types[i] = item.type();
+            registers[i] = item.start();
+            byteOffsets[i] = (item.start() - group.startOffset()) * 2;
+            byteLengths[i] = item.size() * 2;
+            //Having ints as keys in json makes the parsing hard on some tools/libraries.
+            //So prefix with "S" from start to make them a string.
+            fieldNames[i] = new SerializedString("S" + item.start());
+            deadbands[i] = item.deadband();
+            topicNames[i] = item.name().toLowerCase(Locale.ROOT)
+                    .replaceAll("[^a-z0-9]+", "_")
+                    .replaceAll("^_|_$", "");
+        }
+    }
+
+    static GroupDecoder of(ModbusConst.Group group) {
+        return DECODERS.computeIfAbsent(group, GroupDecoder::new);
+    }
+
+    ModbusConst.Group group() {
+        return group;
+    }
+
+    int size() {
+        return types.length;
+    }
+
+    ModbusConst.DataType type(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return json key of the item, pre-encoded
+     */
+    SerializedString fieldName(int index) {
+        return fieldNames[index];
+    }
+
+    int byteLength(int index) {
+        return byteLengths[index];
+    }
+
+    /**
+     * @return topic level of the item, e.g. "voltage_phase_v_l1_n"
+     */
+    String topicName(int index) {
+        return topicNames[index];
+    }
+
+    ModbusConst.Item.Deadband deadband(int index) {
+        return deadbands[index];
+    }
+
+    /**
+     * @return index of the item starting at the given register, -1 if there is none
+     */
+    int indexOf(int register) {
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == register) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes all items of the group.
+     *
+     * @param buf  registers of the group, starting at {@link ModbusConst.Group#startOffset()}
+     * @param into target, numeric values are stored as raw bits
+     */
+    void decode(ByteBuffer buf, GroupValues into) {
+        long[] raw = into.raw;
+        for (int i = 0; i < types.length; i++) {
+            int offset = byteOffsets[i];
+            switch (types[i]) {
+                case SIGNED16 -> raw[i] = buf.getShort(offset);
+                case UNSIGNED16 -> raw[i] = buf.getShort(offset) & 0x0000ffffL;
+                case UNSIGNED32 -> raw[i] = buf.getInt(offset) & 0x00000000ffffffffL;
+                //note: unsigned64 is stored as signed, but chances of having such a big value is slim
+                case UNSIGNED64, FLOAT64 -> raw[i] = buf.getLong(offset);
+                case FLOAT32 -> raw[i] = buf.getInt(offset);
+                case STRING -> into.updateString(i, buf, offset, byteLengths[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Last decoded values of a single {@link ModbusConst.Group} on one unit.
+ * Numeric values are kept as raw bits in a primitive array, so decoding doesn't box.
+ * Instances are reused between polls, strings are only re-created when their bytes change.
+ * <p>
+ * Not thread safe, only to be used while holding the poll lock.
+ */
+public final class GroupValues implements JsonSerializable {
+
+    private final GroupDecoder decoder;
+    private final PublishPlan plan;
+    final long[] raw;
+    private final String[] strings;
+    private final byte[][] stringBytes;
+    /**
+     * Registers of the last decode, to detect changes. null if never decoded.
+     */
+    private ByteBuffer lastRegisters;
+    private long publishedNanos;
+    /**
+     * Values of the last publish. null if never published.
+     */
+    private long[] publishedRaw;
+    private String[] publishedStrings;
+    /**
+     * Values of the last publish per item, for the flat item topics.
+     */
+    private final long[] itemPublishedRaw;
+    private final String[] itemPublishedStrings;
+    private final boolean[] itemPublished;
+
+    GroupValues(GroupDecoder decoder, PublishPlan plan) {
+        this.decoder = decoder;
+        this.plan = plan;
+        this.raw = new long[decoder.size()];
+        this.strings = new String[decoder.size()];
+        this.stringBytes = new byte[decoder.size()][];
+        this.itemPublishedRaw = new long[decoder.size()];
+        this.itemPublishedStrings = new String[decoder.size()];
+        this.itemPublished = new boolean[decoder.size()];
+        for (int i = 0; i < decoder.size(); i++) {
+            if (decoder.type(i) == ModbusConst.DataType.STRING) {
+                stringBytes[i] = new byte[decoder.byteLength(i)];
+            }
+        }
+    }
+
+    public ModbusConst.Group group() {
+        return decoder.group();
+    }
+
+    PublishPlan plan() {
+        return plan;
+    }
+
+    /**
+     * @return number of items
+     */
+    public int size() {
+        return raw.length;
+    }
+
+    public long getLong(int register) {
+        return longAt(index(register));
+    }
+
+    public float getFloat(int register) {
+        return floatAt(index(register));
+    }
+
+    public double getDouble(int register) {
+        return doubleAt(index(register));
+    }
+
+    public String getString(int register) {
+        return strings[index(register)];
+    }
+
+    /**
+     * Decodes the registers of the group into this instance, unless they are identical to the previous ones.
+     *
+     * @param buf registers of the group, starting at position 0
+     * @return false if nothing changed since the previous decode, nothing is decoded then
+     */
+    boolean decode(ByteBuffer buf) {
+        if (lastRegisters == null) {
+            lastRegisters = ByteBuffer.allocate(buf.remaining());
+        } else if (buf.mismatch(lastRegisters) < 0) {
+            return false;
+        }
+        lastRegisters.put(0, buf, 0, buf.remaining());
+        decoder.decode(buf, this);
+        return true;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the last publish, see {@link #markPublished(long)}
+     */
+    long publishedNanos() {
+        return publishedNanos;
+    }
+
+    /**
+     * Remembers the current values as published.
+     */
+    void markPublished(long nanos) {
+        this.publishedNanos = nanos;
+        if (publishedRaw == null) {
+            publishedRaw = new long[raw.length];
+            publishedStrings = new String[raw.length];
+        }
+        System.arraycopy(raw, 0, publishedRaw, 0, raw.length);
+        System.arraycopy(strings, 0, publishedStrings, 0, raw.length);
+    }
+
+    /**
+     * @return true if any item moved past its {@link ModbusConst.Item.Deadband} since the last publish
+     */
+    boolean exceedsDeadband() {
+        if (publishedRaw == null) {
+            return true;
+        }
+        for (int i = 0; i < raw.length; i++) {
+            if (changed(i, publishedRaw[i], publishedStrings[i], true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param deadband true to only count changes past the {@link ModbusConst.Item.Deadband} of the item
+     * @return true if the item changed since its last {@link #markItemPublished(int)}
+     */
+    boolean itemChanged(int index, boolean deadband) {
+        return !itemPublished[index] || changed(index, itemPublishedRaw[index], itemPublishedStrings[index], deadband);
+    }
+
+    void markItemPublished(int index) {
+        itemPublished[index] = true;
+        itemPublishedRaw[index] = raw[index];
+        itemPublishedStrings[index] = strings[index];
+    }
+
+    private boolean changed(int index, long publishedBits, String publishedString, boolean deadband) {
+        if (decoder.type(index) == ModbusConst.DataType.STRING) {
+            return !Objects.equals(strings[index], publishedString);
+        }
+        return raw[index] != publishedBits
+                && (!deadband || decoder.deadband(index).exceeded(toDouble(index, publishedBits), doubleAt(index)));
+    }
+
+    /**
+     * @return plain text value of the item, as published on the item topic
+     */
+    String format(int index) {
+        return switch (decoder.type(index)) {
+            case STRING -> strings[index];
+            case FLOAT32 -> Float.toString(Float.intBitsToFloat((int) raw[index]));
+            case FLOAT64 -> Double.toString(Double.longBitsToDouble(raw[index]));
+            default -> Long.toString(raw[index]);
+        };
+    }
+
+    /**
+     * @return copy of the raw bits of all items, in item order
+     */
+    long[] copyRaw() {
+        return raw.clone();
+    }
+
+    long longAt(int index) {
+        return switch (decoder.type(index)) {
+            case FLOAT32, FLOAT64, STRING -> (long) doubleAt(index);
+            default -> raw[index];
+        };
+    }
+
+    float floatAt(int index) {
+        return (float) doubleAt(index);
+    }
+
+    double doubleAt(int index) {
+        return toDouble(index, raw[index]);
+    }
+
+    private double toDouble(int index, long bits) {
+        return switch (decoder.type(index)) {
+            case FLOAT32 -> Float.intBitsToFloat((int) bits);
+            case FLOAT64 -> Double.longBitsToDouble(bits);
+            case STRING -> Double.NaN;
+            default -> bits;
+        };
+    }
+
+    private int index(int register) {
+        int index = decoder.indexOf(register);
+        if (index < 0) {
+            throw new IllegalArgumentException("No item on register " + register + " in group " + group().name());
+        }
+        return index;
+    }
+
+    void updateString(int index, ByteBuffer buf, int offset, int length) {
+        byte[] previous = stringBytes[index];
+        boolean changed = strings[index] == null;
+        for (int i = 0; i < length && !changed; i++) {
+            changed = previous[i] != buf.get(offset + i);
+        }
+        if (!changed) {
+            return;
+        }
+        buf.get(offset, previous, 0, length);
+        //the string is padded with null-terminators, so cut at the first one
+        int end = 0;
+        while (end < length && previous[end] != 0) {
+            end++;
+        }
+        strings[index] = new String(previous, 0, end, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        writeJson(gen);
+    }
+
+    /**
+     * Writes all items as a json object, keyed by {@link GroupDecoder#fieldName(int)}.
+     */
+    void writeJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        for (int i = 0; i < raw.length; i++) {
+            gen.writeFieldName(decoder.fieldName(i));
+            switch (decoder.type(i)) {
+                case STRING -> gen.writeString(strings[i]);
+                case FLOAT32 -> gen.writeNumber(Float.intBitsToFloat((int) raw[i]));
+                case FLOAT64 -> gen.writeNumber(Double.longBitsToDouble(raw[i]));
+                default -> gen.writeNumber(raw[i]);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(group().name()).append('{');
+        for (int i = 0; i < raw.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(decoder.fieldName(i).getValue()).append('=');
+            if (decoder.type(i) == ModbusConst.DataType.STRING) {
+                sb.append(strings[i]);
+            } else {
+                sb.append(doubleAt(i));
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,65 @@
+package org.muizenhol.alfen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last reading of a control input and when it was received, lock-free.
+ * Both are packed in a single long, so they are always read consistently:
+ * the upper 24 bits hold the value, the lower 40 bits the ms since the creation of the holder
+ * on the monotonic clock (good for 34 years).
+ */
+final class InputReading {
+
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    static final int MAX_VALUE = (1 << 23) - 1;
+    static final int MIN_VALUE = -(1 << 23);
+
+    private final long originNanos;
+    /**
+     * 0 if never set, the time is stored + 1 to tell them apart
+     */
+    private final AtomicLong packed = new AtomicLong();
+
+    InputReading(long originNanos) {
+        this.originNanos = originNanos;
+    }
+
+    /**
+     * @param value     clamped to the 24 bit signed range
+     * @param nowNanos  {@link System#nanoTime()}
+     */
+    void set(int value, long nowNanos) {
+        long clamped = Math.max(MIN_VALUE, Math.min(MAX_VALUE, value));
+        long time = TimeUnit.NANOSECONDS.toMillis(nowNanos - originNanos) + 1;
+        packed.set((clamped << TIME_BITS) | (time & TIME_MASK));
+    }
+
+    boolean isSet() {
+        return packed.get() != 0;
+    }
+
+    int value() {
+        return (int) (packed.get() >> TIME_BITS);
+    }
+
+    /**
+     * @return ms since the last reading, -1 if never set
+     */
+    long ageMillis(long nowNanos) {
+        long time = packed.get() & TIME_MASK;
+        if (time == 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nowNanos - originNanos) + 1 - time;
+    }
+
+    /**
+     * @return true if never set, or older than the max age
+     */
+    boolean isStale(long nowNanos, long maxAgeMillis) {
+        long age = ageMillis(nowNanos);
+        return age < 0 || age > maxAgeMillis;
+    }
+}
@@ -0,0 +1,114 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.muizenhol.alfen.data.Evcc;
+import org.muizenhol.alfen.data.PropertyParsed;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializes payloads with a {@link JsonGenerator} straight into the {@link ByteBuf} backing the vert.x {@link Buffer},
+ * without an intermediate byte array.
+ * The payloads published every poll have a hand-written writer, anything else goes through the {@link ObjectMapper}.
+ * <p>
+ * Buffers are unpooled: the mqtt client holds on to the payload until the broker acked it,
+ * and gives no hook to release a pooled buffer after that.
+ */
+final class JsonBuffers {
+
+    private static final int MAX_SIZE_HINT = 16 * 1024;
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString VALUE = new SerializedString("value");
+    private static final SerializedString ENABLED = new SerializedString("enabled");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString POWER = new SerializedString("power");
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    /**
+     * Largest payload so far, to size new buffers so they don't have to grow.
+     */
+    private volatile int sizeHint = 256;
+
+    JsonBuffers(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    Buffer write(Object payload) {
+        ByteBuf buf = Unpooled.buffer(sizeHint);
+        try (JsonGenerator gen = jsonFactory.createGenerator(new ByteBufOutputStream(buf))) {
+            write(gen, payload);
+        } catch (IOException e) {
+            buf.release();
+            throw new RuntimeException(e);
+        }
+        int size = buf.writerIndex();
+        if (size > sizeHint && size <= MAX_SIZE_HINT) {
+            sizeHint = size;
+        }
+        return Buffer.buffer(buf);
+    }
+
+    private void write(JsonGenerator gen, Object payload) throws IOException {
+        if (payload instanceof GroupValues values) {
+            values.writeJson(gen);
+        } else if (payload instanceof PropertyParsed property) {
+            writeProperty(gen, property);
+        } else if (payload instanceof Evcc.Charger charger) {
+            writeCharger(gen, charger);
+        } else if (payload instanceof List<?> list) {
+            gen.writeStartArray();
+            for (Object o : list) {
+                write(gen, o);
+            }
+            gen.writeEndArray();
+        } else {
+            objectMapper.writeValue(gen, payload);
+        }
+    }
+
+    private static void writeProperty(JsonGenerator gen, PropertyParsed property) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(NAME);
+        gen.writeString(property.name());
+        gen.writeFieldName(ID);
+        gen.writeString(property.id());
+        gen.writeFieldName(VALUE);
+        Object value = property.value();
+        if (value instanceof Integer i) {
+            gen.writeNumber(i);
+        } else if (value instanceof Double d) {
+            gen.writeNumber(d);
+        } else if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value.toString());
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeCharger(JsonGenerator gen, Evcc.Charger charger) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ENABLED);
+        gen.writeBoolean(charger.enabled());
+        gen.writeFieldName(STATUS);
+        gen.writeString(charger.status());
+        gen.writeFieldName(POWER);
+        if (charger.power() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(charger.power());
+        }
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,144 @@
+package org.muizenhol.alfen;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithName;
+
+import java.time.Duration;
+
+@ConfigMapping(prefix = "modbus")
+public interface ModbusConfig {
+
+    @WithName("write_enabled")
+    @WithDefault("false")
+    boolean writeEnabled();
+
+    /**
+     * Max number of unused registers between two groups to still fetch them in a single read.
+     */
+    @WithDefault("8")
+    int maxRegisterGap();
+
+    /**
+     * Max number of read requests outstanding at the same time on one connection.
+     * 1 reads one request after the other, higher values pipeline the requests of a poll cycle.
+     */
+    @WithDefault("1")
+    int maxInFlight();
+
+    /**
+     * Where the blocking modbus calls of a device run. Each device gets its own, so devices poll in parallel.
+     */
+    @WithDefault("VIRTUAL")
+    DeviceExecutor.Mode executor();
+
+    /**
+     * The max current is written again this long before its valid time runs out, see {@link SocketSnapshot#validTime()}.
+     * Should be well above the status poll interval. Limited to half the valid time.
+     * No keep-alive is done before a valid time above 0 was read.
+     */
+    @WithDefault("PT10s")
+    Duration keepAliveMargin();
+
+    Poll poll();
+
+    Transport transport();
+
+    Publish publish();
+
+    enum Output {
+        /**
+         * One json document per group
+         */
+        GROUP,
+        /**
+         * Every item on its own retained topic, only when it changed.
+         * The socket measurement keeps its json document as well, the Home Assistant discovery points at it.
+         */
+        ITEM,
+        BOTH
+    }
+
+    interface Publish {
+        @WithDefault("GROUP")
+        Output output();
+
+        /**
+         * Groups of which the registers didn't change are not published, except once every heartbeat.
+         * PT0s publishes every read.
+         */
+        @WithDefault("PT1m")
+        Duration heartbeat();
+
+        /**
+         * Only publish a changed group when at least one item moved past its {@link ModbusConst.Item.Deadband}.
+         * Also applies to the item topics.
+         * The heartbeat still applies, it is the max time a group stays silent.
+         */
+        @WithDefault("true")
+        boolean deadband();
+    }
+
+    interface Transport {
+        /**
+         * Threads of the netty event loop group shared by all modbus connections.
+         * 0 reuses the event loop group of vert.x.
+         */
+        @WithDefault("0")
+        int eventLoopThreads();
+    }
+
+    interface Poll {
+        /**
+         * Base tick of the poll loop. The group intervals are rounded to a multiple of this.
+         */
+        @WithDefault("PT1s")
+        Duration interval();
+
+        /**
+         * What to do when a poll cycle takes longer than the interval.
+         */
+        @WithDefault("SKIP")
+        OverrunPolicy overrunPolicy();
+
+        /**
+         * Interval to publish the poll statistics on.
+         */
+        @WithDefault("PT1m")
+        Duration statsInterval();
+
+        /**
+         * Static identity data. Always read once after connecting.
+         */
+        @WithDefault("PT1h")
+        Duration productIdentification();
+
+        @WithDefault("PT10s")
+        Duration stationStatus();
+
+        @WithDefault("PT1s")
+        Duration socketMeasurement();
+
+        /**
+         * Interval of the socket measurement while the socket is not charging (Mode 3 state other than C or D).
+         */
+        @WithDefault("PT30s")
+        Duration socketMeasurementIdle();
+
+        @WithDefault("PT1s")
+        Duration status();
+
+        default Duration groupInterval(ModbusConst.Group group) {
+            if (group == ModbusConst.PRODUCT_IDENTIFICATION) {
+                return productIdentification();
+            } else if (group == ModbusConst.STATION_STATUS) {
+                return stationStatus();
+            } else if (group == ModbusConst.SOCKET_MEASUREMENT) {
+                return socketMeasurement();
+            } else if (group == ModbusConst.STATUS) {
+                return status();
+            }
+            return interval();
+        }
+    }
+}
@@ -24,7 +24,7 @@ public class ModbusConst {
     public record Group(String name, int startOffset, int size, List<Item> items) {
     }
 
-    public record Item(String name, int start, int size, DataType type, DiscoveryInfo discoveryInfo) {
+    public record Item(String name, int start, int size, DataType type, DiscoveryInfo discoveryInfo, Deadband deadband) {
         public Item(String name, int start, int size, DataType type) {
             this(name, start, size, type, false);
         }
@@ -33,14 +33,47 @@ public class ModbusConst {
             this(name, start, size, type, null);
         }
 
+        public Item(String name, int start, int size, DataType type, DiscoveryInfo discoveryInfo) {
+            this(name, start, size, type, discoveryInfo, discoveryInfo == null ? Deadband.NONE : discoveryInfo.deadband());
+        }
+
         public record DiscoveryInfo(DeviceClass deviceClass,
-                                    StateClass stateClass, String unit, int precision) {
+                                    StateClass stateClass, String unit, int precision, Deadband deadband) {
+            public DiscoveryInfo(DeviceClass deviceClass, StateClass stateClass, String unit, int precision) {
+                this(deviceClass, stateClass, unit, precision, Deadband.NONE);
+            }
+        }
+
+        /**
+         * Minimal change of a value since the last publish, before it is worth publishing again.
+         * The threshold is the largest of the absolute value and the relative part of the last published value.
+         */
+        public record Deadband(double absolute, double relative) {
+            /**
+             * Every change is published.
+             */
+            public static final Deadband NONE = new Deadband(0, 0);
+            /**
+             * A change is never a reason to publish, e.g. for timestamps. The value is still part of every publish.
+             */
+            public static final Deadband NEVER = new Deadband(Double.POSITIVE_INFINITY, 0);
+
+            public boolean exceeded(double published, double current) {
+                if (Double.compare(published, current) == 0) {
+                    return false;
+                }
+                double delta = Math.abs(current - published);
+                if (Double.isNaN(delta)) {
+                    return this != NEVER;
+                }
+                return delta > Math.max(absolute, relative * Math.abs(published));
+            }
         }
 
-        public static final DiscoveryInfo POWER_WATT = new DiscoveryInfo(DeviceClass.POWER, StateClass.MEASUREMENT, "W", 0);
-        public static final DiscoveryInfo VOLTAGE = new DiscoveryInfo(DeviceClass.VOLTAGE, StateClass.MEASUREMENT, "V", 0);
-        public static final DiscoveryInfo CURRENT_2 = new DiscoveryInfo(DeviceClass.CURRENT, StateClass.MEASUREMENT, "A", 2);
-        public static final DiscoveryInfo FREQUENCY_2 = new DiscoveryInfo(DeviceClass.FREQUENCY, StateClass.MEASUREMENT, "Hz", 2);
+        public static final DiscoveryInfo POWER_WATT = new DiscoveryInfo(DeviceClass.POWER, StateClass.MEASUREMENT, "W", 0, new Deadband(10, 0.01));
+        public static final DiscoveryInfo VOLTAGE = new DiscoveryInfo(DeviceClass.VOLTAGE, StateClass.MEASUREMENT, "V", 0, new Deadband(1, 0));
+        public static final DiscoveryInfo CURRENT_2 = new DiscoveryInfo(DeviceClass.CURRENT, StateClass.MEASUREMENT, "A", 2, new Deadband(0.1, 0));
+        public static final DiscoveryInfo FREQUENCY_2 = new DiscoveryInfo(DeviceClass.FREQUENCY, StateClass.MEASUREMENT, "Hz", 2, new Deadband(0.05, 0));
         public static final DiscoveryInfo ENERGY = new DiscoveryInfo(DeviceClass.ENERGY, StateClass.TOTAL_INCREASING, "Wh", 0);
     }
 
@@ -48,8 +81,13 @@ public class ModbusConst {
     public static final int ID_NR_OF_SOCKETS = 1105;
     public static final int ID_STATION_SERIAL_NUMBER = 157;
     public static final int ID_SOCKET_MAX_CURRENT = 1210;
+    public static final int ID_MODE3_STATE = 1201;
+    public static final int ID_MAX_CURRENT_VALID_TIME = 1208;
     public static final int ID_NUM_PHASES = 1215;
     public static final int ID_REAL_POWER_SUM = 344;
+    public static final int ID_CURRENT_PHASE_L1 = 320;
+    public static final int ID_CURRENT_PHASE_L2 = 322;
+    public static final int ID_CURRENT_PHASE_L3 = 324;
 
     public enum StartOffset {
         PRODUCT_IDENTIFICATION(100),
@@ -102,7 +140,7 @@ public class ModbusConst {
     public static final Group SOCKET_MEASUREMENT =
             new Group("socket_measurement", StartOffset.SOCKET_MEASUREMENT.offset, 125, List.of(
                     new Item("Meter state", 300, 1, DataType.SIGNED16),
-                    new Item("Meter last value timestamp", 301, 4, DataType.UNSIGNED64),
+                    new Item("Meter last value timestamp", 301, 4, DataType.UNSIGNED64, null, Item.Deadband.NEVER),
                     new Item("Meter type", 305, 1, DataType.UNSIGNED16),
                     new Item("Voltage Phase V(L1-N)", 306, 2, DataType.FLOAT32, Item.VOLTAGE),
                     new Item("Voltage Phase V(L2-N)", 308, 2, DataType.FLOAT32, Item.VOLTAGE),
@@ -111,9 +149,9 @@ public class ModbusConst {
                     new Item("Voltage Phase V(L2-L3)", 314, 2, DataType.FLOAT32),
                     new Item("Voltage Phase V(L3-L1)", 316, 2, DataType.FLOAT32),
                     new Item("Current N", 318, 2, DataType.FLOAT32),
-                    new Item("Current Phase L1", 320, 2, DataType.FLOAT32, Item.CURRENT_2),
-                    new Item("Current Phase L2", 322, 2, DataType.FLOAT32, Item.CURRENT_2),
-                    new Item("Current Phase L3", 324, 2, DataType.FLOAT32, Item.CURRENT_2),
+                    new Item("Current Phase L1", ID_CURRENT_PHASE_L1, 2, DataType.FLOAT32, Item.CURRENT_2),
+                    new Item("Current Phase L2", ID_CURRENT_PHASE_L2, 2, DataType.FLOAT32, Item.CURRENT_2),
+                    new Item("Current Phase L3", ID_CURRENT_PHASE_L3, 2, DataType.FLOAT32, Item.CURRENT_2),
                     new Item("Current Sum", 326, 2, DataType.FLOAT32),
                     new Item("Power Factor Phase L1", 328, 2, DataType.FLOAT32),
                     new Item("Power Factor Phase L2", 330, 2, DataType.FLOAT32),
@@ -158,7 +196,7 @@ public class ModbusConst {
     public static final Group STATUS =
             new Group("status", StartOffset.SOCKET_STATUS.offset, 16, List.of(
                     new Item("Availability", 1200, 1, DataType.UNSIGNED16),
-                    new Item("Mode 3 state", 1201, 5, DataType.STRING),
+                    new Item("Mode 3 state", ID_MODE3_STATE, 5, DataType.STRING),
                     new Item("Actual Applied Max Current", 1206, 2, DataType.FLOAT32, Item.CURRENT_2),
                     new Item("Modbus Slave Max Current valid time", 1208, 2, DataType.UNSIGNED32),
                     ITEM_MAX_CURRENT,
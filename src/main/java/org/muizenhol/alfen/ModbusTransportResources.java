@@ -0,0 +1,48 @@
+package org.muizenhol.alfen;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Netty resources shared by the modbus transports of all devices,
+ * so the number of threads doesn't grow with the number of devices.
+ */
+final class ModbusTransportResources implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final EventLoopGroup eventLoopGroup;
+    private final boolean owned;
+
+    /**
+     * @param eventLoopThreads 0 to reuse the event loop group of vert.x, otherwise the size of a dedicated group
+     */
+    ModbusTransportResources(Vertx vertx, int eventLoopThreads) {
+        if (eventLoopThreads <= 0) {
+            LOG.info("Modbus transports use the vert.x event loop group");
+            this.eventLoopGroup = vertx.nettyEventLoopGroup();
+            this.owned = false;
+        } else {
+            LOG.info("Modbus transports use a dedicated event loop group of {} threads", eventLoopThreads);
+            this.eventLoopGroup = new NioEventLoopGroup(eventLoopThreads, new DefaultThreadFactory("modbus-netty", true));
+            this.owned = true;
+        }
+    }
+
+    EventLoopGroup eventLoopGroup() {
+        return eventLoopGroup;
+    }
+
+    @Override
+    public void close() {
+        if (owned) {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+}
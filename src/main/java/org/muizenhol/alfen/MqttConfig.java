@@ -1,6 +1,9 @@
 package org.muizenhol.alfen;
 
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
 
 @ConfigMapping(prefix = "mqtt")
 public interface MqttConfig {
@@ -11,4 +14,69 @@ public interface MqttConfig {
     boolean enabled();
 
     String clientId();
+
+    Queue queue();
+
+    Journal journal();
+
+    /**
+     * Delay before reconnecting after the broker connection was lost
+     */
+    @WithDefault("PT30s")
+    Duration restartDelay();
+
+    /**
+     * On-disk journal of the telemetry published while the broker is not connected, replayed after reconnecting.
+     */
+    interface Journal {
+        @WithDefault("false")
+        boolean enabled();
+
+        @WithDefault("alfen-journal.bin")
+        String path();
+
+        /**
+         * Size of the journal file, telemetry is dropped once it is full
+         */
+        @WithDefault("16777216")
+        int maxBytes();
+
+        /**
+         * Max number of journaled messages to replay per second
+         */
+        @WithDefault("20")
+        int replayRate();
+
+        /**
+         * Journaled messages are replayed on their topic with this prefix, e.g. history/alfen/modbus/...
+         */
+        @WithDefault("history/")
+        String historyPrefix();
+    }
+
+    interface Queue {
+        /**
+         * Max number of messages waiting to be published
+         */
+        @WithDefault("1000")
+        int capacity();
+
+        /**
+         * Max number of payload bytes waiting to be published
+         */
+        @WithDefault("1048576")
+        long maxBytes();
+
+        /**
+         * Max number of messages sent to the broker without ack
+         */
+        @WithDefault("100")
+        int maxInflight();
+
+        /**
+         * Interval to publish the queue statistics on
+         */
+        @WithDefault("PT1m")
+        Duration statsInterval();
+    }
 }
\ No newline at end of file
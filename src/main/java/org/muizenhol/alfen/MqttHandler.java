@@ -1,8 +1,8 @@
 package org.muizenhol.alfen;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.mqtt.MqttClient;
@@ -12,36 +12,83 @@ import jakarta.enterprise.context.ApplicationScoped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 @ApplicationScoped
 public class MqttHandler {
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int REPLAY_TICK_MS = 250;
+    private static final String TOPIC_STATS = "alfen/mqtt/stats";
     private final Vertx vertx;
     private MqttClient mqttClient;
     private volatile boolean started = false;
     private volatile boolean stopped = false;
     private final MqttConfig mqttConfig;
-    private final ObjectMapper objectMapper;
+    private final JsonBuffers jsonBuffers;
+    private final OutboundQueue queue;
+    /**
+     * Messages waiting for a broker ack, per packet id
+     */
+    private final Map<Integer, OutboundQueue.Message> inflight = new ConcurrentHashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    /**
+     * A publish failed during the drain, the rest waits for the next one. Guarded by this.
+     */
+    private boolean drainFailed = false;
+    private final AtomicLong published = new AtomicLong();
+    private volatile long lastLatencyNanos = 0;
+    private volatile long maxLatencyNanos = 0;
+    private volatile Context context;
+    private long statsTimer = -1;
+    /**
+     * null if not enabled or stopped
+     */
+    private volatile TelemetryJournal journal;
+    private long replayTimer = -1;
+    private long restartTimer = -1;
 
-    private final List<Subscriber> listeners = new ArrayList<>();
+    private final TopicTrie<Listener> listeners = new TopicTrie<>();
+    /**
+     * Distinct topic filters of the listeners, each subscribed once
+     */
+    private final Set<String> topicFilters = new LinkedHashSet<>();
 
     public interface Listener {
-        void handleMessage(String topic, Matcher matchedTopic, String payload);
-    }
-
-    private record Subscriber(Pattern pattern, String mqttPattern, Listener listener) {
+        /**
+         * @param wildcards levels of the topic matched by the wildcards of the topic filter, see {@link TopicTrie.Visitor}
+         */
+        void handleMessage(String topic, List<String> wildcards, Buffer payload);
     }
 
     public MqttHandler(Vertx vertx, MqttConfig mqttConfig, ObjectMapper objectMapper) {
         this.vertx = vertx;
         this.mqttConfig = mqttConfig;
-        this.objectMapper = objectMapper;
+        this.jsonBuffers = new JsonBuffers(objectMapper);
+        this.queue = new OutboundQueue(mqttConfig.queue().capacity(), mqttConfig.queue().maxBytes());
+    }
+
+    private static TelemetryJournal openJournal(MqttConfig.Journal config) {
+        if (!config.enabled()) {
+            return null;
+        }
+        try {
+            return TelemetryJournal.open(Path.of(config.path()), config.maxBytes());
+        } catch (IOException e) {
+            LOG.warn("Cannot open journal {}, telemetry is not kept during outages", config.path(), e);
+            return null;
+        }
     }
 
 
@@ -51,15 +98,34 @@ public class MqttHandler {
             LOG.warn("MQTT not enabled");
             return;
         }
+        stopped = false;
         MqttClientOptions mqttClientOptions = new MqttClientOptions()
-                .setMaxInflightQueue(200);
+                .setMaxInflightQueue(mqttConfig.queue().maxInflight());
         mqttClientOptions.setAutoAck(true);
+        context = vertx.getOrCreateContext();
+        if (journal == null) {
+            journal = openJournal(mqttConfig.journal());
+        }
         mqttClient = MqttClient.create(vertx, mqttClientOptions);
+        mqttClient.publishCompletionHandler(this::handlePublishCompleted);
+        if (statsTimer < 0) {
+            long statsInterval = mqttConfig.queue().statsInterval().toMillis();
+            //straight to the queue, stats of an outage are of no use afterward
+            statsTimer = vertx.setPeriodic(statsInterval, statsInterval, l -> {
+                queue.offer(TOPIC_STATS, jsonBuffers.write(queueStats()), false, OutboundQueue.Policy.KEEP_LATEST, System.nanoTime());
+                scheduleDrain();
+            });
+        }
+        if (journal != null && replayTimer < 0) {
+            replayTimer = vertx.setPeriodic(REPLAY_TICK_MS, l -> replayJournal());
+        }
 
         connectMqtt(() -> {
             LOG.info("MQTT ready");
             subscribe();
+            requeueInflight();
             started = true;
+            scheduleDrain();
         });
         mqttClient.closeHandler(v -> {
             LOG.info("Mqtt closed, restart");
@@ -87,10 +153,38 @@ public class MqttHandler {
 
     public void stop() {
         LOG.info("Stopping");
-        started = false;
         stopped = true;
+        if (restartTimer >= 0) {
+            vertx.cancelTimer(restartTimer);
+            restartTimer = -1;
+        }
+        closeConnection();
+        if (replayTimer >= 0) {
+            vertx.cancelTimer(replayTimer);
+            replayTimer = -1;
+        }
+        TelemetryJournal closing = journal;
+        journal = null;
+        if (closing != null) {
+            try {
+                closing.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing journal", e);
+            }
+        }
+    }
+
+    /**
+     * Close the broker connection, without stopping the handler
+     */
+    private void closeConnection() {
+        started = false;
+        TelemetryJournal current = journal;
+        if (current != null) {
+            current.flush();
+        }
         //consumer.unregister()
-        if (mqttClient.isConnected()) {
+        if (mqttClient != null && mqttClient.isConnected()) {
             mqttClient.disconnect();
         }
     }
@@ -104,30 +198,37 @@ public class MqttHandler {
             LOG.warn("Cannot restart, not yet running");
             return;
         }
-        stop();
-        LOG.info("Restarting in 30s");
-        vertx.setTimer(Duration.ofSeconds(30).toMillis(), l -> {
-            start();
+        closeConnection();
+        Duration delay = mqttConfig.restartDelay();
+        LOG.info("Restarting in {}", delay);
+        restartTimer = vertx.setTimer(delay.toMillis(), l -> {
+            restartTimer = -1;
+            if (!stopped) {
+                start();
+            }
         });
     }
 
-    public synchronized void register(Pattern topicPattern, String mqttPattern, Listener listener) {
-        LOG.info("Subscribing to topic {}", mqttPattern);
-        listeners.add(new Subscriber(topicPattern, mqttPattern, listener));
-        if (started) {
-            mqttClient.subscribe(mqttPattern, MqttQoS.AT_LEAST_ONCE.value());
+    /**
+     * @param topicFilter mqtt topic filter, can contain the + and # wildcards
+     */
+    public synchronized void register(String topicFilter, Listener listener) {
+        LOG.info("Subscribing to topic {}", topicFilter);
+        listeners.add(topicFilter, listener);
+        if (topicFilters.add(topicFilter) && started) {
+            mqttClient.subscribe(topicFilter, MqttQoS.AT_LEAST_ONCE.value());
         }
         // else will be done in subscribe call
     }
 
     private synchronized void subscribe() {
         mqttClient.publishHandler(this::handleMsg);
-        listeners.forEach(l -> {
-            LOG.info("Re-Subscribing to topic {}", l.mqttPattern);
+        topicFilters.forEach(topicFilter -> {
+            LOG.info("Re-Subscribing to topic {}", topicFilter);
             mqttClient.subscribe(
-                    l.mqttPattern,
+                    topicFilter,
                     MqttQoS.AT_LEAST_ONCE.value(),
-                    ar -> LOG.info("mqtt subscribe result for {}: {}", l.mqttPattern, ar)
+                    ar -> LOG.info("mqtt subscribe result for {}: {}", topicFilter, ar)
             );
         });
     }
@@ -139,12 +240,10 @@ public class MqttHandler {
     private void handleMsgWitchAck(MqttPublishMessage msg) {
         LOG.debug("Got msg on {}", msg.topicName());
 
-        listeners.forEach(t -> {
-            Matcher m = t.pattern.matcher(msg.topicName());
-            if (m.matches()) {
-                LOG.debug("Dispatching to {}", t.mqttPattern);
-                t.listener.handleMessage(msg.topicName(), m, msg.payload().toString());
-            }
+        Buffer payload = msg.payload();
+        listeners.match(msg.topicName(), (listener, wildcards) -> {
+            LOG.debug("Dispatching to {}", listener);
+            listener.handleMessage(msg.topicName(), wildcards, payload);
         });
     }
 
@@ -153,16 +252,55 @@ public class MqttHandler {
     }
 
     public void publishJson(String topic, Object payload, boolean retain) {
-        try {
-            Buffer buffer = Buffer.buffer(objectMapper.writer().writeValueAsBytes(payload));
-            publish(topic, buffer, retain);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
+        publishJson(topic, payload, retain, OutboundQueue.Policy.NEVER_DROP);
+    }
+
+    void publishJson(String topic, Object payload, boolean retain, OutboundQueue.Policy policy) {
+        publish(topic, jsonBuffers.write(payload), retain, policy);
     }
 
     public void publish(String topic, Buffer payload, boolean retain) {
-        mqttClient.publish(topic, payload, MqttQoS.AT_LEAST_ONCE, false, retain);
+        publish(topic, payload, retain, OutboundQueue.Policy.NEVER_DROP);
+    }
+
+    /**
+     * Queues the message, it is published as soon as the connection allows.
+     */
+    void publish(String topic, Buffer payload, boolean retain, OutboundQueue.Policy policy) {
+        TelemetryJournal current = journal;
+        if (current != null && policy == OutboundQueue.Policy.KEEP_LATEST && !isConnected()) {
+            current.append(topic, payload, System.currentTimeMillis());
+            return;
+        }
+        queue.offer(topic, payload, retain, policy, System.nanoTime());
+        scheduleDrain();
+    }
+
+    private boolean isConnected() {
+        return started && mqttClient.isConnected();
+    }
+
+    /**
+     * Moves a rate limited part of the journal to the queue, as long as the queue keeps up.
+     * Replayed messages go to the history topics, so consumers of the live topics never get an old value after a new one.
+     * They are never retained.
+     */
+    private void replayJournal() {
+        TelemetryJournal current = journal;
+        if (current == null || !isConnected() || current.pending() == 0 || queue.depth() > mqttConfig.queue().capacity() / 2) {
+            return;
+        }
+        int count = Math.max(1, mqttConfig.journal().replayRate() * REPLAY_TICK_MS / 1000);
+        String prefix = mqttConfig.journal().historyPrefix();
+        for (int i = 0; i < count; i++) {
+            TelemetryJournal.Entry entry = current.poll();
+            if (entry == null) {
+                break;
+            }
+            queue.offer(prefix + entry.topic(), TelemetryJournal.withTimestamp(entry.payload(), entry.timestampMs()),
+                    false, OutboundQueue.Policy.NEVER_DROP, System.nanoTime());
+        }
+        scheduleDrain();
     }
 
     public void publish(String topic, Buffer payload) {
@@ -170,7 +308,82 @@ public class MqttHandler {
     }
 
     public void publish(String topic, String payload) {
-        mqttClient.publish(topic, Buffer.buffer(payload), MqttQoS.AT_LEAST_ONCE, false, false);
+        publish(topic, Buffer.buffer(payload), false);
+    }
+
+    public MqttQueueStats queueStats() {
+        TelemetryJournal current = journal;
+        return new MqttQueueStats(queue.depth(), queue.bytes(), inflight.size(), queue.dropped(), published.get(),
+                TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos), TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos),
+                current == null ? 0 : current.pending());
+    }
+
+    private void scheduleDrain() {
+        Context ctx = context;
+        if (ctx != null && started && drainScheduled.compareAndSet(false, true)) {
+            ctx.runOnContext(v -> {
+                drainScheduled.set(false);
+                drain();
+            });
+        }
+    }
+
+    /**
+     * Sends queued messages, as long as the broker keeps up with the acks.
+     */
+    private synchronized void drain() {
+        drainFailed = false;
+        while (!drainFailed && started && mqttClient.isConnected() && inflight.size() < mqttConfig.queue().maxInflight()) {
+            OutboundQueue.Message message = queue.poll();
+            if (message == null) {
+                return;
+            }
+            mqttClient.publish(message.topic(), message.payload(), MqttQoS.AT_LEAST_ONCE, false, message.retain())
+                    .onSuccess(packetId -> inflight.put(packetId, message))
+                    .onFailure(e -> publishFailed(message, e));
+        }
+    }
+
+    /**
+     * {@link OutboundQueue.Policy#NEVER_DROP} messages go back in front of the queue, the others count as dropped.
+     */
+    private synchronized void publishFailed(OutboundQueue.Message message, Throwable e) {
+        //no retry in the same drain, a message that keeps failing would loop
+        drainFailed = true;
+        if (message.policy() == OutboundQueue.Policy.NEVER_DROP) {
+            LOG.warn("Error publishing to {}, retrying later", message.topic(), e);
+            queue.requeue(List.of(message));
+        } else {
+            LOG.warn("Error publishing to {}, dropped", message.topic(), e);
+            queue.markDropped();
+        }
+    }
+
+    /**
+     * Messages sent on the previous connection that were never acked are sent again, before anything else.
+     */
+    private void requeueInflight() {
+        List<OutboundQueue.Message> unacked = inflight.values().stream()
+                .sorted(Comparator.comparingLong(OutboundQueue.Message::enqueuedNanos))
+                .toList();
+        inflight.clear();
+        if (!unacked.isEmpty()) {
+            LOG.info("Sending {} unacked messages again", unacked.size());
+            queue.requeue(unacked);
+        }
+    }
+
+    private void handlePublishCompleted(int packetId) {
+        OutboundQueue.Message message = inflight.remove(packetId);
+        if (message != null) {
+            long latency = System.nanoTime() - message.enqueuedNanos();
+            lastLatencyNanos = latency;
+            if (latency > maxLatencyNanos) {
+                maxLatencyNanos = latency;
+            }
+            published.incrementAndGet();
+        }
+        drain();
     }
 
     public boolean isStarted() {
@@ -1,5 +1,6 @@
 package org.muizenhol.alfen;
 
+import io.vertx.core.buffer.Buffer;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.muizenhol.alfen.data.Evcc;
@@ -11,7 +12,7 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @ApplicationScoped
@@ -19,6 +20,11 @@ public class MqttPublisher {
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private final MqttConfig mqttConfig;
     private final MqttHandler mqttHandler;
+    static final String TOPIC_MODBUS_STATE = "alfen/modbus/state/";
+    /**
+     * Topics of the http properties, per device and category.
+     */
+    private final Map<String, Map<String, String>> propertyTopics = new ConcurrentHashMap<>();
 
 //    @Inject
 //    @Channel("properties")
@@ -35,7 +41,8 @@ public class MqttPublisher {
             LOG.debug("MQTT is disabled");
             return;
         }
-        String topic = "alfen/properties/" + device.toLowerCase() + "/category/" + category;
+        String topic = propertyTopics.computeIfAbsent(device, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(category, c -> "alfen/properties/" + device.toLowerCase() + "/category/" + c);
         LOG.debug("Sending to topic: {}", topic);
 
 //        CompletableFuture<Void> future = new CompletableFuture<>();
@@ -54,24 +61,35 @@ public class MqttPublisher {
 //            return null;
 //        });
 //        emitter.send(msg);
-        mqttHandler.publishJson(topic, properties);
+        mqttHandler.publishJson(topic, properties, false, OutboundQueue.Policy.KEEP_LATEST);
 
     }
 
-    public void sendModbus(String name, String group, Map<Integer, Object> values, int addr) {
+    /**
+     * @param topic see {@link PublishPlan#topic()}
+     */
+    public void sendModbus(String topic, GroupValues values) {
         if (!mqttConfig.enabled()) {
             LOG.debug("MQTT is disabled");
             return;
         }
-        //Having ints as keys in json makes the parsing hard on some tools/libraries.
-        //So prefix with "S" from start to make them a string.
-        Map<String, Object> values2 = values.entrySet().stream()
-                .collect(Collectors.toMap(i -> "S" + i.getKey(), Map.Entry::getValue));
-        String topic = "alfen/modbus/state/" + name + "/" + addr + "/" + group;
 
         //MqttMessage<Object> msg = MqttMessage.of(topic, values2, MqttQoS.AT_LEAST_ONCE);
         //emitter.send(msg);
-        mqttHandler.publishJson(topic, values2);
+        //GroupValues serializes itself, with "S" prefixed keys
+        mqttHandler.publishJson(topic, values, false, OutboundQueue.Policy.KEEP_LATEST);
+    }
+
+    /**
+     * Publishes a single item, retained, with the plain value as payload.
+     *
+     * @param topic see {@link PublishPlan#itemTopics()}
+     */
+    public void sendModbusItem(String topic, String value) {
+        if (!mqttConfig.enabled()) {
+            return;
+        }
+        mqttHandler.publish(topic, Buffer.buffer(value), true, OutboundQueue.Policy.KEEP_LATEST);
     }
 
     public void sendModbusEvcc(String name, int addr, Evcc.Charger charger) {
@@ -82,7 +100,21 @@ public class MqttPublisher {
         String topic = "alfen/evcc/status/" + name + "/" + addr;
         //MqttMessage<Object> msg = MqttMessage.of(topic, charger, MqttQoS.AT_LEAST_ONCE);
         //emitter.send(msg);
-        mqttHandler.publishJson(topic, charger);
+        mqttHandler.publishJson(topic, charger, false, OutboundQueue.Policy.KEEP_LATEST);
+    }
+
+    public void sendWriterStats(String name, int socket, WriterStats stats) {
+        if (!mqttConfig.enabled()) {
+            return;
+        }
+        mqttHandler.publishJson("alfen/writer/stats/" + name + "/" + socket, stats, false, OutboundQueue.Policy.KEEP_LATEST);
+    }
+
+    public void sendStats(String name, PollStats stats) {
+        if (!mqttConfig.enabled()) {
+            return;
+        }
+        mqttHandler.publishJson("alfen/modbus/stats/" + name, stats, false, OutboundQueue.Policy.KEEP_LATEST);
     }
 
     @ConfigProperty(name = "discovery.uuid")
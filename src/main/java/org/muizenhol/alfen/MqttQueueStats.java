@@ -0,0 +1,17 @@
+package org.muizenhol.alfen;
+
+/**
+ * Counters of the outbound mqtt queue.
+ *
+ * @param depth         messages waiting
+ * @param bytes         payload bytes waiting
+ * @param inflight      messages sent, waiting for the ack of the broker
+ * @param dropped       messages dropped or replaced by a newer one before they were published
+ * @param published     messages acked by the broker
+ * @param lastLatencyMs time between queueing and ack of the last message
+ * @param maxLatencyMs  longest time between queueing and ack
+ * @param journalBytes  bytes in the journal left to replay, 0 if there is no journal
+ */
+public record MqttQueueStats(int depth, long bytes, int inflight, long dropped, long published,
+                             long lastLatencyMs, long maxLatencyMs, long journalBytes) {
+}
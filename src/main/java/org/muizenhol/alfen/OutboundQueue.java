@@ -0,0 +1,156 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.buffer.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Messages waiting to be published, bounded in number of messages and bytes.
+ * Telemetry only keeps the latest message per topic. When the queue is full, the oldest telemetry is dropped first.
+ * Only when there is no telemetry left to drop, the newest {@link Policy#NEVER_DROP} message is dropped,
+ * to keep memory bounded during a long broker outage.
+ */
+final class OutboundQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    enum Policy {
+        /**
+         * Only the latest message of the topic matters, e.g. state updates
+         */
+        KEEP_LATEST,
+        /**
+         * Every message is delivered, e.g. discovery and commands
+         */
+        NEVER_DROP
+    }
+
+    record Message(String topic, Buffer payload, boolean retain, Policy policy, long enqueuedNanos) {
+    }
+
+    private final int capacity;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Message> latest = new LinkedHashMap<>();
+    private final ArrayDeque<Message> reliable = new ArrayDeque<>();
+    private long bytes = 0;
+    private long dropped = 0;
+
+    OutboundQueue(int capacity, long maxBytes) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized void offer(String topic, Buffer payload, boolean retain, Policy policy, long nowNanos) {
+        Message message = new Message(topic, payload, retain, policy, nowNanos);
+        if (policy == Policy.KEEP_LATEST) {
+            Message previous = latest.put(topic, message);
+            if (previous != null) {
+                bytes -= previous.payload().length();
+                dropped++;
+            }
+        } else {
+            reliable.addLast(message);
+        }
+        bytes += payload.length();
+        trim();
+    }
+
+    /**
+     * Puts messages that were sent but never acked back in front of the queue, in the order they were sent.
+     * Telemetry of which a newer message is queued already is dropped.
+     */
+    synchronized void requeue(List<Message> messages) {
+        //backwards, so adding to the front keeps the order
+        for (Message message : messages.reversed()) {
+            if (message.policy() == Policy.NEVER_DROP) {
+                reliable.addFirst(message);
+                bytes += message.payload().length();
+            }
+        }
+        LinkedHashMap<String, Message> front = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.policy() != Policy.KEEP_LATEST) {
+                continue;
+            }
+            if (latest.containsKey(message.topic())) {
+                dropped++;
+                continue;
+            }
+            Message previous = front.put(message.topic(), message);
+            if (previous != null) {
+                bytes -= previous.payload().length();
+                dropped++;
+            }
+            bytes += message.payload().length();
+        }
+        if (!front.isEmpty()) {
+            front.putAll(latest);
+            latest.clear();
+            latest.putAll(front);
+        }
+        trim();
+    }
+
+    /**
+     * Drops messages until the queue is within its bounds again
+     */
+    private void trim() {
+        while (depth() > capacity || bytes > maxBytes) {
+            Message evicted;
+            if (!latest.isEmpty()) {
+                Iterator<Message> it = latest.values().iterator();
+                evicted = it.next();
+                it.remove();
+            } else {
+                evicted = reliable.pollLast();
+                LOG.warn("Outbound mqtt queue full, dropping message on {}", evicted.topic());
+            }
+            bytes -= evicted.payload().length();
+            dropped++;
+        }
+    }
+
+    /**
+     * @return next message to publish, {@link Policy#NEVER_DROP} messages first. null if empty.
+     */
+    synchronized Message poll() {
+        Message message = reliable.pollFirst();
+        if (message == null && !latest.isEmpty()) {
+            Iterator<Message> it = latest.values().iterator();
+            message = it.next();
+            it.remove();
+        }
+        if (message != null) {
+            bytes -= message.payload().length();
+        }
+        return message;
+    }
+
+    synchronized int depth() {
+        return latest.size() + reliable.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Counts a message that was taken from the queue, but couldn't be published.
+     */
+    synchronized void markDropped() {
+        dropped++;
+    }
+
+    /**
+     * @return number of messages dropped or replaced by a newer one before they were published
+     */
+    synchronized long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,20 @@
+package org.muizenhol.alfen;
+
+/**
+ * What a {@link PollDriver} does with ticks that come in while a poll cycle is still running.
+ */
+public enum OverrunPolicy {
+    /**
+     * Drop the tick, the next cycle starts on the next regular tick.
+     */
+    SKIP,
+    /**
+     * All ticks during a cycle are merged into a single cycle, started as soon as the running one finishes.
+     */
+    COALESCE,
+    /**
+     * No fixed rate: the next cycle starts one interval after the start of the previous one,
+     * or right after it when the cycle took longer than the interval.
+     */
+    RUN_IMMEDIATELY_AFTER
+}
@@ -0,0 +1,200 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extracts a single number from an mqtt payload, without building a string or json tree of the payload.
+ * The payload is either a plain number, or a json document in which a JSON pointer selects the number.
+ */
+final class PayloadExtractor {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * Max number of digits of which the value is exact in a long and a double
+     */
+    private static final int MAX_DIGITS = 15;
+
+    private final JsonFactory jsonFactory;
+    /**
+     * Decoded levels of the pointer, null for a plain number
+     */
+    private final String[] pointer;
+
+    private PayloadExtractor(JsonFactory jsonFactory, String[] pointer) {
+        this.jsonFactory = jsonFactory;
+        this.pointer = pointer;
+    }
+
+    static PayloadExtractor plain() {
+        return new PayloadExtractor(null, null);
+    }
+
+    /**
+     * @param pointer JSON pointer (RFC 6901) to the number, e.g. "/data/Power_real_1_3". "" is the whole document.
+     */
+    static PayloadExtractor pointer(JsonFactory jsonFactory, String pointer) {
+        if (pointer.isEmpty()) {
+            return new PayloadExtractor(jsonFactory, new String[0]);
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid JSON pointer, should start with /: " + pointer);
+        }
+        String[] levels = pointer.substring(1).split("/", -1);
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = levels[i].replace("~1", "/").replace("~0", "~");
+        }
+        return new PayloadExtractor(jsonFactory, levels);
+    }
+
+    /**
+     * @return the number, NaN if the payload doesn't contain a valid number at the expected place
+     */
+    double extract(Buffer payload) {
+        if (pointer == null) {
+            return parseNumber(payload);
+        }
+        try (JsonParser parser = createParser(payload)) {
+            return extract(parser);
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+
+    private JsonParser createParser(Buffer payload) throws IOException {
+        ByteBuf buf = payload.getByteBuf();
+        if (buf.hasArray()) {
+            return jsonFactory.createParser(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        }
+        return jsonFactory.createParser(new ByteBufInputStream(buf));
+    }
+
+    private double extract(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        for (String level : pointer) {
+            if (token == JsonToken.START_OBJECT) {
+                token = nextField(parser, level);
+            } else if (token == JsonToken.START_ARRAY) {
+                token = nextElement(parser, level);
+            } else {
+                return Double.NaN;
+            }
+            if (token == null) {
+                return Double.NaN;
+            }
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return parseNumber(Buffer.buffer(parser.getText()));
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @return first token of the value of the field, null if there is no such field
+     */
+    private static JsonToken nextField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            JsonToken value = parser.nextToken();
+            if (name.equals(parser.currentName())) {
+                return value;
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    /**
+     * @return first token of the element, null if there is no such element
+     */
+    private static JsonToken nextElement(JsonParser parser, String index) throws IOException {
+        int n;
+        try {
+            n = Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        for (int i = 0; ; i++) {
+            JsonToken value = parser.nextToken();
+            if (value == null || value == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (i == n) {
+                return value;
+            }
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Parses a decimal number like "-12.345", surrounding whitespace allowed.
+     * Exponents and long numbers fall back to {@link Double#parseDouble(String)}.
+     *
+     * @return the number, NaN if it isn't valid
+     */
+    static double parseNumber(Buffer payload) {
+        int end = payload.length();
+        int i = 0;
+        while (i < end && isWhitespace(payload.getByte(i))) {
+            i++;
+        }
+        while (end > i && isWhitespace(payload.getByte(end - 1))) {
+            end--;
+        }
+        int start = i;
+        boolean negative = false;
+        if (i < end && (payload.getByte(i) == '-' || payload.getByte(i) == '+')) {
+            negative = payload.getByte(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = payload.getByte(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits > MAX_DIGITS) {
+            //exponent, too many digits or invalid: let the jdk sort it out
+            return parseSlow(payload, start, end);
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        double value = fractionDigits > 0 ? mantissa / POW10[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow(Buffer payload, int start, int end) {
+        try {
+            return Double.parseDouble(payload.getString(start, end, StandardCharsets.US_ASCII.name()));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
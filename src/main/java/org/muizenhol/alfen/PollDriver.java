@@ -0,0 +1,138 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a poll cycle on an interval, never more than one at the same time.
+ * What happens with ticks that come in while a cycle is still running is decided by the {@link OverrunPolicy}.
+ */
+final class PollDriver implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final Vertx vertx;
+    private final String name;
+    private final Duration interval;
+    private final OverrunPolicy policy;
+    private final Executor executor;
+    private final Runnable cycle;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private volatile long lastDurationNanos = 0;
+    private volatile long maxDurationNanos = 0;
+    private volatile long timerId = -1;
+    private volatile boolean closed = false;
+
+    /**
+     * @param executor runs the cycles, may block
+     * @param cycle    the actual poll work
+     */
+    PollDriver(Vertx vertx, String name, Duration interval, OverrunPolicy policy, Executor executor, Runnable cycle) {
+        this.vertx = vertx;
+        this.name = name;
+        this.interval = interval;
+        this.policy = policy;
+        this.executor = executor;
+        this.cycle = cycle;
+    }
+
+    /**
+     * @param offset delay of the first cycle, see {@link PollPhase}
+     */
+    void start(Duration offset) {
+        long delay = offset.toMillis();
+        if (policy != OverrunPolicy.RUN_IMMEDIATELY_AFTER) {
+            timerId = vertx.setPeriodic(delay, interval.toMillis(), l -> tick());
+        } else if (delay > 0) {
+            timerId = vertx.setTimer(delay, l -> tick());
+        } else {
+            tick();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    PollStats stats() {
+        return new PollStats(cycles.get(), overruns.get(),
+                TimeUnit.NANOSECONDS.toMillis(lastDurationNanos),
+                TimeUnit.NANOSECONDS.toMillis(maxDurationNanos));
+    }
+
+    void tick() {
+        if (closed) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            overruns.incrementAndGet();
+            LOG.debug("Poll of {} still running ({})", name, policy);
+            if (policy == OverrunPolicy.COALESCE) {
+                pending.set(true);
+            }
+            return;
+        }
+        try {
+            executor.execute(this::runCycle);
+        } catch (RejectedExecutionException e) {
+            //otherwise every next tick is seen as an overrun
+            running.set(false);
+            pending.set(false);
+            LOG.warn("Poll of {} rejected", name, e);
+            if (policy == OverrunPolicy.RUN_IMMEDIATELY_AFTER && !closed) {
+                timerId = vertx.setTimer(interval.toMillis(), l -> tick());
+            }
+        }
+    }
+
+    private void runCycle() {
+        long start = System.nanoTime();
+        try {
+            cycle.run();
+        } catch (RuntimeException e) {
+            LOG.warn("Error in poll cycle of {}", name, e);
+        } finally {
+            //also on an Error, so the next tick still runs
+            finishCycle(start);
+        }
+    }
+
+    private void finishCycle(long start) {
+        long duration = System.nanoTime() - start;
+        lastDurationNanos = duration;
+        if (duration > maxDurationNanos) {
+            maxDurationNanos = duration;
+        }
+        cycles.incrementAndGet();
+        running.set(false);
+
+        if (policy == OverrunPolicy.RUN_IMMEDIATELY_AFTER) {
+            long delay = TimeUnit.NANOSECONDS.toMillis(interval.toNanos() - duration);
+            if (delay <= 0) {
+                overruns.incrementAndGet();
+                tick();
+            } else if (!closed) {
+                timerId = vertx.setTimer(delay, l -> tick());
+            }
+        } else if (pending.getAndSet(false)) {
+            tick();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.muizenhol.alfen;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads the first poll of a number of pollers evenly over the poll interval,
+ * so the I/O of all devices doesn't fire at the same moment every period.
+ */
+final class PollPhase {
+
+    private PollPhase() {
+    }
+
+    /**
+     * @param index    0-based index of the poller
+     * @param count    total number of pollers sharing the interval
+     * @param interval poll interval
+     * @param jitter   max random delay added on top, zero to disable
+     * @return delay of the first poll
+     */
+    static Duration offset(int index, int count, Duration interval, Duration jitter) {
+        long nanos = interval.toNanos() * index / Math.max(1, count);
+        if (jitter.toNanos() > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(jitter.toNanos());
+        }
+        return Duration.ofNanos(nanos);
+    }
+}
@@ -0,0 +1,70 @@
+package org.muizenhol.alfen;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of which {@link ModbusConst.Group} is due on which poll cycle.
+ * Intervals are counted in poll cycles, so jitter on the poll timer never causes a group to be skipped.
+ */
+class PollScheduler {
+
+    private record Key(ModbusConst.Group group, int unitId) {
+    }
+
+    private final ModbusConfig.Poll config;
+    private final Map<Key, Long> nextCycle = new HashMap<>();
+    private final Map<Key, Duration> intervals = new HashMap<>();
+    private long cycle = -1;
+
+    PollScheduler(ModbusConfig.Poll config) {
+        this.config = config;
+    }
+
+    /**
+     * Marks the start of a new poll cycle.
+     */
+    void startCycle() {
+        cycle++;
+    }
+
+    /**
+     * @return true if the group was never read on this unit, or its interval has passed.
+     */
+    boolean isDue(ModbusConst.Group group, int unitId) {
+        Long next = nextCycle.get(new Key(group, unitId));
+        return next == null || next <= cycle;
+    }
+
+    /**
+     * Should be called after a successful read, schedules the next read of the group.
+     */
+    void markRead(ModbusConst.Group group, int unitId) {
+        Key key = new Key(group, unitId);
+        nextCycle.put(key, cycle + cycles(interval(key)));
+    }
+
+    /**
+     * Overrides the configured interval of the group on this unit.
+     * When the interval gets shorter the group is due on the next cycle, so it doesn't wait for the old interval.
+     */
+    void setInterval(ModbusConst.Group group, int unitId, Duration interval) {
+        Key key = new Key(group, unitId);
+        Duration previous = interval(key);
+        intervals.put(key, interval);
+        if (interval.compareTo(previous) < 0) {
+            nextCycle.computeIfPresent(key, (k, next) -> Math.min(next, cycle + 1));
+        }
+    }
+
+    private Duration interval(Key key) {
+        Duration interval = intervals.get(key);
+        return interval != null ? interval : config.groupInterval(key.group());
+    }
+
+    private long cycles(Duration interval) {
+        long tick = Math.max(1, config.interval().toMillis());
+        return Math.max(1, Math.round((double) interval.toMillis() / tick));
+    }
+}
@@ -0,0 +1,12 @@
+package org.muizenhol.alfen;
+
+/**
+ * Counters of a {@link PollDriver}.
+ *
+ * @param cycles          number of completed poll cycles
+ * @param overruns        number of ticks that came in while a cycle was still running
+ * @param lastDurationMs  duration of the last cycle
+ * @param maxDurationMs   longest cycle so far
+ */
+public record PollStats(long cycles, long overruns, long lastDurationMs, long maxDurationMs) {
+}
@@ -0,0 +1,24 @@
+package org.muizenhol.alfen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Topics of a group on a single device and unit.
+ * Built once, so publishing on the poll loop doesn't build any strings.
+ *
+ * @param topic      topic of the json document with all items
+ * @param itemTopics topic per item, in item order
+ */
+record PublishPlan(String topic, List<String> itemTopics) {
+
+    static PublishPlan modbus(String device, int unitId, GroupDecoder decoder) {
+        String topic = MqttPublisher.TOPIC_MODBUS_STATE + device + "/" + unitId + "/" + decoder.group().name();
+        List<String> itemTopics = new ArrayList<>(decoder.size());
+        for (int i = 0; i < decoder.size(); i++) {
+            itemTopics.add(MqttPublisher.TOPIC_MODBUS_STATE + device + "/" + unitId + "/" + decoder.topicName(i));
+        }
+        return new PublishPlan(topic, Collections.unmodifiableList(itemTopics));
+    }
+}
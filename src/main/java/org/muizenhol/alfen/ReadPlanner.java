@@ -0,0 +1,89 @@
+package org.muizenhol.alfen;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Combines the groups to read from one unit into as few modbus requests as possible.
+ * Groups end up in the same request when the unused registers in between are at most {@code maxGap},
+ * and the combined request stays within the modbus limit of {@link #MAX_REGISTERS}.
+ */
+class ReadPlanner {
+
+    /**
+     * Max number of registers in a single ReadHoldingRegisters request.
+     */
+    static final int MAX_REGISTERS = 125;
+
+    private final int maxGap;
+
+    /**
+     * A single modbus request
+     *
+     * @param unitId  unit to read from
+     * @param address first register
+     * @param count   number of registers
+     * @param groups  groups contained in this request, ordered by address
+     */
+    record Read(int unitId, int address, int count, List<ModbusConst.Group> groups) {
+
+        /**
+         * @return offset in bytes of the group in the response of this request
+         */
+        int byteOffset(ModbusConst.Group group) {
+            return (group.startOffset() - address) * 2;
+        }
+    }
+
+    ReadPlanner(int maxGap) {
+        this.maxGap = maxGap;
+    }
+
+    List<Read> plan(int unitId, List<ModbusConst.Group> groups) {
+        List<ModbusConst.Group> sorted = new ArrayList<>(groups);
+        sorted.sort(Comparator.comparingInt(ModbusConst.Group::startOffset));
+
+        List<Read> reads = new ArrayList<>();
+        List<ModbusConst.Group> current = new ArrayList<>();
+        int start = 0;
+        int end = 0;
+        for (ModbusConst.Group group : sorted) {
+            int groupSpan = span(group);
+            if (groupSpan > MAX_REGISTERS) {
+                throw new IllegalArgumentException("Group " + group.name() + " too big to read at once: " + groupSpan);
+            }
+            int groupEnd = group.startOffset() + groupSpan;
+            if (!current.isEmpty()
+                    && group.startOffset() - end <= maxGap
+                    && Math.max(end, groupEnd) - start <= MAX_REGISTERS) {
+                current.add(group);
+                end = Math.max(end, groupEnd);
+                continue;
+            }
+            if (!current.isEmpty()) {
+                reads.add(new Read(unitId, start, end - start, List.copyOf(current)));
+                current.clear();
+            }
+            current.add(group);
+            start = group.startOffset();
+            end = groupEnd;
+        }
+        if (!current.isEmpty()) {
+            reads.add(new Read(unitId, start, end - start, List.copyOf(current)));
+        }
+        return reads;
+    }
+
+    /**
+     * @return number of registers covered by the items of the group.
+     * Can be smaller than the group size when the last registers are not mapped to an item.
+     */
+    static int span(ModbusConst.Group group) {
+        int end = group.startOffset();
+        for (ModbusConst.Item item : group.items()) {
+            end = Math.max(end, item.start() + item.size());
+        }
+        return end - group.startOffset();
+    }
+}
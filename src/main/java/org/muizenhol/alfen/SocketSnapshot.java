@@ -0,0 +1,148 @@
+package org.muizenhol.alfen;
+
+/**
+ * Immutable view on the last readings of a single socket.
+ * Values are kept as raw bits in primitive arrays, indexed like the items of
+ * {@link ModbusConst#SOCKET_MEASUREMENT} and {@link ModbusConst#STATUS}.
+ * A new instance is created every time one of the groups is read, the arrays of the other group are shared.
+ * Safe to share between threads.
+ */
+public final class SocketSnapshot {
+
+    private static final GroupDecoder MEASUREMENT = GroupDecoder.of(ModbusConst.SOCKET_MEASUREMENT);
+    private static final GroupDecoder STATUS = GroupDecoder.of(ModbusConst.STATUS);
+    private static final int IDX_REAL_POWER_SUM = MEASUREMENT.indexOf(ModbusConst.ID_REAL_POWER_SUM);
+    private static final int IDX_CURRENT_L1 = MEASUREMENT.indexOf(ModbusConst.ID_CURRENT_PHASE_L1);
+    private static final int IDX_CURRENT_L2 = MEASUREMENT.indexOf(ModbusConst.ID_CURRENT_PHASE_L2);
+    private static final int IDX_CURRENT_L3 = MEASUREMENT.indexOf(ModbusConst.ID_CURRENT_PHASE_L3);
+    private static final int IDX_MAX_CURRENT = STATUS.indexOf(ModbusConst.ID_SOCKET_MAX_CURRENT);
+    private static final int IDX_NUM_PHASES = STATUS.indexOf(ModbusConst.ID_NUM_PHASES);
+    private static final int IDX_VALID_TIME = STATUS.indexOf(ModbusConst.ID_MAX_CURRENT_VALID_TIME);
+
+    private final int socket;
+    private final long sequence;
+    private final long capturedNanos;
+    private final long statusNanos;
+    private final long[] measurement;
+    private final long[] status;
+    private final String mode3State;
+
+    private SocketSnapshot(int socket, long sequence, long capturedNanos, long statusNanos, long[] measurement, long[] status, String mode3State) {
+        this.socket = socket;
+        this.sequence = sequence;
+        this.capturedNanos = capturedNanos;
+        this.statusNanos = statusNanos;
+        this.measurement = measurement;
+        this.status = status;
+        this.mode3State = mode3State;
+    }
+
+    /**
+     * @return snapshot without any readings
+     */
+    static SocketSnapshot empty(int socket) {
+        return new SocketSnapshot(socket, 0, 0, 0, null, null, null);
+    }
+
+    SocketSnapshot withMeasurement(GroupValues values, long sequence, long capturedNanos) {
+        return new SocketSnapshot(socket, sequence, capturedNanos, statusNanos, values.copyRaw(), status, mode3State);
+    }
+
+    SocketSnapshot withStatus(GroupValues values, long sequence, long capturedNanos) {
+        return new SocketSnapshot(socket, sequence, capturedNanos, capturedNanos, measurement, values.copyRaw(),
+                values.getString(ModbusConst.ID_MODE3_STATE));
+    }
+
+    public int socket() {
+        return socket;
+    }
+
+    /**
+     * @return increasing number, a higher sequence means newer data. 0 when nothing was read yet.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the last group was read
+     */
+    public long capturedNanos() {
+        return capturedNanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the status was read
+     */
+    public long statusNanos() {
+        return statusNanos;
+    }
+
+    public boolean hasMeasurement() {
+        return measurement != null;
+    }
+
+    public boolean hasStatus() {
+        return status != null;
+    }
+
+    public float realPowerSum() {
+        return Float.intBitsToFloat((int) measurement[IDX_REAL_POWER_SUM]);
+    }
+
+    /**
+     * @param phase 1 to 3
+     */
+    public float current(int phase) {
+        int index = switch (phase) {
+            case 1 -> IDX_CURRENT_L1;
+            case 2 -> IDX_CURRENT_L2;
+            case 3 -> IDX_CURRENT_L3;
+            default -> throw new IllegalArgumentException("Invalid phase: " + phase);
+        };
+        return Float.intBitsToFloat((int) measurement[index]);
+    }
+
+    /**
+     * @return "Modbus Slave Max Current" as last read from the charger
+     */
+    public float maxCurrent() {
+        return Float.intBitsToFloat((int) status[IDX_MAX_CURRENT]);
+    }
+
+    public int numPhases() {
+        return (int) status[IDX_NUM_PHASES];
+    }
+
+    /**
+     * @return seconds the max current stays valid, counted from {@link #statusNanos()}.
+     * The charger falls back to its safe current when it runs out.
+     */
+    public long validTime() {
+        return status[IDX_VALID_TIME];
+    }
+
+    /**
+     * @return IEC 61851 state, e.g. "A" (no car), "B1" (connected) or "C2" (charging)
+     */
+    public String mode3State() {
+        return mode3State;
+    }
+
+    /**
+     * @return true in Mode 3 state C or D
+     */
+    public boolean isCharging() {
+        return mode3State != null && !mode3State.isEmpty()
+                && (mode3State.charAt(0) == 'C' || mode3State.charAt(0) == 'D');
+    }
+
+    @Override
+    public String toString() {
+        return "SocketSnapshot{socket=" + socket
+                + ", sequence=" + sequence
+                + (hasMeasurement() ? ", realPowerSum=" + realPowerSum() : "")
+                + (hasStatus() ? ", mode3State=" + mode3State + ", maxCurrent=" + maxCurrent() + ", numPhases=" + numPhases() : "")
+                + '}';
+    }
+}
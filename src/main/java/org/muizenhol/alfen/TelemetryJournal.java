@@ -0,0 +1,233 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.buffer.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only journal of telemetry, on a memory-mapped file of fixed size.
+ * Keeps what is published while the broker is not connected, to replay it afterward.
+ * The file is never grown or rewritten, so it stays cheap on an SD-card: once fully replayed, writing restarts at the beginning.
+ * When the file is full, new messages are dropped.
+ * <p>
+ * Layout: a header with the read and write position, followed by records of
+ * {@code [int length][long timestamp ms][short topic length][topic][payload]}.
+ */
+final class TelemetryJournal implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int MAGIC = 0x414a4e31;
+    private static final int POS_MAGIC = 0;
+    private static final int POS_WRITE = 4;
+    private static final int POS_READ = 8;
+    static final int HEADER = 12;
+    private static final int RECORD_HEADER = Integer.BYTES + Long.BYTES + Short.BYTES;
+    private static final byte[] TIMESTAMP_KEY = "\"timestamp\"".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * Payloads that are a json value by themselves, anything else is wrapped as a string
+     */
+    private static final Pattern JSON_VALUE = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?|true|false|null|\\[.*]|\"([^\"\\\\]|\\\\.)*\"", Pattern.DOTALL);
+
+    record Entry(String topic, Buffer payload, long timestampMs) {
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private int writePos;
+    private int readPos;
+    private long dropped = 0;
+
+    private TelemetryJournal(FileChannel channel, MappedByteBuffer buf) {
+        this.channel = channel;
+        this.buf = buf;
+        if (buf.getInt(POS_MAGIC) == MAGIC) {
+            writePos = buf.getInt(POS_WRITE);
+            readPos = buf.getInt(POS_READ);
+        }
+        if (writePos < HEADER || writePos > buf.capacity() || readPos < HEADER || readPos > writePos) {
+            writePos = HEADER;
+            readPos = HEADER;
+        } else if (readPos < writePos) {
+            LOG.info("Journal has {} bytes left to replay", writePos - readPos);
+        }
+        buf.putInt(POS_MAGIC, MAGIC);
+        storePositions();
+    }
+
+    /**
+     * Opens the journal, continuing the one of a previous run if there is any.
+     *
+     * @param maxBytes size of the file
+     */
+    static TelemetryJournal open(Path path, int maxBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new TelemetryJournal(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, maxBytes));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return false if the message doesn't fit anymore, it is dropped then
+     */
+    synchronized boolean append(String topic, Buffer payload, long timestampMs) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + topicBytes.length + payload.length();
+        if (writePos + length > buf.capacity()) {
+            if (dropped++ == 0) {
+                LOG.warn("Journal full, dropping telemetry until it is replayed");
+            }
+            return false;
+        }
+        int pos = writePos;
+        buf.putInt(pos, length);
+        buf.putLong(pos + Integer.BYTES, timestampMs);
+        buf.putShort(pos + Integer.BYTES + Long.BYTES, (short) topicBytes.length);
+        buf.put(pos + RECORD_HEADER, topicBytes);
+        buf.put(pos + RECORD_HEADER + topicBytes.length, payload.getBytes());
+        writePos += length;
+        storePositions();
+        return true;
+    }
+
+    /**
+     * @return oldest message not replayed yet, null if there is none
+     */
+    synchronized Entry poll() {
+        if (readPos >= writePos) {
+            return null;
+        }
+        int pos = readPos;
+        int length = buf.getInt(pos);
+        long timestampMs = buf.getLong(pos + Integer.BYTES);
+        int topicLength = buf.getShort(pos + Integer.BYTES + Long.BYTES) & 0xffff;
+        byte[] topic = new byte[topicLength];
+        buf.get(pos + RECORD_HEADER, topic);
+        byte[] payload = new byte[length - RECORD_HEADER - topicLength];
+        buf.get(pos + RECORD_HEADER + topicLength, payload);
+        readPos += length;
+        if (readPos == writePos) {
+            //all replayed, start over to keep the file bounded
+            readPos = HEADER;
+            writePos = HEADER;
+            dropped = 0;
+        }
+        storePositions();
+        return new Entry(new String(topic, StandardCharsets.UTF_8), Buffer.buffer(payload), timestampMs);
+    }
+
+    /**
+     * @return bytes left to replay
+     */
+    synchronized int pending() {
+        return writePos - readPos;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Writes the mapped pages to disk. The OS does this on its own as well, this is only needed on shutdown.
+     */
+    synchronized void flush() {
+        buf.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void storePositions() {
+        buf.putInt(POS_WRITE, writePos);
+        buf.putInt(POS_READ, readPos);
+    }
+
+    /**
+     * Adds the time the message was produced, so replayed readings keep their own time.
+     * Other payloads than a json object, e.g. the plain values of the item topics, are wrapped in
+     * {@code {"timestamp":...,"value":...}}.
+     *
+     * @return payload with a "timestamp" field in ms, the payload itself if it already has one
+     */
+    static Buffer withTimestamp(Buffer payload, long timestampMs) {
+        byte[] bytes = payload.getBytes();
+        if (bytes.length < 2 || bytes[0] != '{') {
+            return wrap(payload, timestampMs);
+        }
+        if (contains(bytes, TIMESTAMP_KEY)) {
+            return payload;
+        }
+        boolean empty = bytes[1] == '}';
+        Buffer result = Buffer.buffer(bytes.length + 32)
+                .appendByte((byte) '{')
+                .appendString("\"timestamp\":")
+                .appendString(Long.toString(timestampMs));
+        if (!empty) {
+            result.appendByte((byte) ',');
+        }
+        return result.appendBytes(bytes, 1, bytes.length - 1);
+    }
+
+    private static Buffer wrap(Buffer payload, long timestampMs) {
+        String value = payload.toString(StandardCharsets.UTF_8);
+        Buffer result = Buffer.buffer(payload.length() + 48)
+                .appendString("{\"timestamp\":")
+                .appendString(Long.toString(timestampMs))
+                .appendString(",\"value\":");
+        if (JSON_VALUE.matcher(value).matches()) {
+            result.appendBuffer(payload);
+        } else {
+            result.appendByte((byte) '"');
+            appendEscaped(result, value);
+            result.appendByte((byte) '"');
+        }
+        return result.appendByte((byte) '}');
+    }
+
+    private static void appendEscaped(Buffer result, String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        result.appendString(escaped.toString());
+    }
+
+    private static boolean contains(byte[] bytes, byte[] key) {
+        outer:
+        for (int i = 0; i <= bytes.length - key.length; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (bytes[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,114 @@
+package org.muizenhol.alfen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Values registered on mqtt topic filters, looked up by topic in O(topic depth).
+ * Supports the mqtt wildcards: {@code +} matches a single level, {@code #} (last level only) matches any number of levels,
+ * including the parent level itself. As in mqtt, wildcards at the first level don't match topics starting with {@code $}.
+ * <p>
+ * Safe to add to while matching.
+ */
+final class TopicTrie<T> {
+
+    /**
+     * Receives a match.
+     */
+    interface Visitor<T> {
+        /**
+         * @param wildcards the levels matched by each {@code +}, in order, followed by the remainder matched by {@code #}
+         */
+        void accept(T value, List<String> wildcards);
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        private volatile Node<T> single;
+        private final List<T> multi = new CopyOnWriteArrayList<>();
+        private final List<T> values = new CopyOnWriteArrayList<>();
+    }
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * @param filter mqtt topic filter, e.g. "alfen/set/+/+/mode" or "sensor/#"
+     */
+    synchronized void add(String filter, T value) {
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = filter.indexOf('/', start);
+            String level = end < 0 ? filter.substring(start) : filter.substring(start, end);
+            if (level.equals("#")) {
+                if (end >= 0) {
+                    throw new IllegalArgumentException("# must be the last level: " + filter);
+                }
+                node.multi.add(value);
+                return;
+            }
+            if (level.equals("+")) {
+                if (node.single == null) {
+                    node.single = new Node<>();
+                }
+                node = node.single;
+            } else {
+                node = node.children.computeIfAbsent(level, l -> new Node<>());
+            }
+            if (end < 0) {
+                node.values.add(value);
+                return;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Calls the visitor for every value of which the filter matches the topic.
+     */
+    void match(String topic, Visitor<T> visitor) {
+        match(root, topic, 0, new ArrayList<>(), visitor);
+    }
+
+    private void match(Node<T> node, String topic, int start, List<String> wildcards, Visitor<T> visitor) {
+        boolean wildcardsAllowed = start > 0 || !topic.startsWith("$");
+        if (wildcardsAllowed && !node.multi.isEmpty()) {
+            List<String> captured = new ArrayList<>(wildcards);
+            captured.add(start > topic.length() ? "" : topic.substring(start));
+            node.multi.forEach(v -> visitor.accept(v, List.copyOf(captured)));
+        }
+        if (start > topic.length()) {
+            //"a/#" also matches "a", nothing else is left below
+            return;
+        }
+        int end = topic.indexOf('/', start);
+        int levelEnd = end < 0 ? topic.length() : end;
+        Node<T> child = node.children.get(topic.substring(start, levelEnd));
+        if (child != null) {
+            matchChild(child, topic, end, wildcards, visitor);
+        }
+        Node<T> single = node.single;
+        if (wildcardsAllowed && single != null) {
+            wildcards.add(topic.substring(start, levelEnd));
+            matchChild(single, topic, end, wildcards, visitor);
+            wildcards.removeLast();
+        }
+    }
+
+    private void matchChild(Node<T> child, String topic, int end, List<String> wildcards, Visitor<T> visitor) {
+        if (end < 0) {
+            if (!child.values.isEmpty()) {
+                List<String> captured = List.copyOf(wildcards);
+                child.values.forEach(v -> visitor.accept(v, captured));
+            }
+            if (!child.multi.isEmpty()) {
+                match(child, topic, topic.length() + 1, wildcards, visitor);
+            }
+        } else {
+            match(child, topic, end + 1, wildcards, visitor);
+        }
+    }
+}
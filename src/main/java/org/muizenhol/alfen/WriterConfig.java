@@ -4,6 +4,7 @@ import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithDefault;
 
 import java.time.Duration;
+import java.util.Optional;
 
 @ConfigMapping(prefix = "writer")
 public interface WriterConfig {
@@ -11,10 +12,65 @@ public interface WriterConfig {
     @WithDefault("false")
     boolean enabled();
 
+    /**
+     * Interval of the updates in {@link Trigger#TIMER} mode.
+     * In {@link Trigger#EVENT} mode, the max time between two updates when no new readings come in.
+     */
     @WithDefault("PT5s")
     Duration interval();
 
+    @WithDefault("TIMER")
+    Trigger trigger();
+
+    /**
+     * Min time between two updates in {@link Trigger#EVENT} mode. Readings in between are handled at the end of it.
+     */
+    @WithDefault("PT1s")
+    Duration minSpacing();
+
+    enum Trigger {
+        /**
+         * Update on a fixed interval
+         */
+        TIMER,
+        /**
+         * Update on every new grid, solar or socket reading
+         */
+        EVENT
+    }
+
     @WithDefault("6")
     int minPower();
 
+    /**
+     * Max age of the grid consumed and produced readings
+     */
+    @WithDefault("PT30s")
+    Duration gridMaxAge();
+
+    /**
+     * Max age of the socket power measurement. Should be above the idle measurement interval of the poller.
+     */
+    @WithDefault("PT1m")
+    Duration socketMaxAge();
+
+    /**
+     * What to do in the PV modes when an input is older than its max age, or wasn't received yet.
+     * When not set, it depends on the mode: {@link StaleAction#OFF} in PV_ONLY, so it never charges from the grid,
+     * {@link StaleAction#MIN_CURRENT} in PV_AND_MIN.
+     */
+    Optional<StaleAction> staleAction();
+
+    enum StaleAction {
+        /**
+         * Leave the charger on the last setting
+         */
+        HOLD,
+        /**
+         * Charge at {@link #minPower()}
+         */
+        MIN_CURRENT,
+        OFF
+    }
+
 }
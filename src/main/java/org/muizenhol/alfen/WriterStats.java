@@ -0,0 +1,13 @@
+package org.muizenhol.alfen;
+
+/**
+ * Freshness of the inputs of an {@link AlfenModbusWriter}. Ages are -1 for inputs that never reported.
+ *
+ * @param gridAgeMs          age of the oldest of the grid consumed and produced readings
+ * @param solarAgeMs         age of the solar reading
+ * @param socketAgeMs        age of the socket power measurement
+ * @param staleUpdates       number of updates that used the stale action instead of the readings
+ * @param stale              true if the last update used the stale action
+ */
+public record WriterStats(long gridAgeMs, long solarAgeMs, long socketAgeMs, long staleUpdates, boolean stale) {
+}
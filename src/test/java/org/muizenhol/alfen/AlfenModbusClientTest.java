@@ -16,6 +16,7 @@ import jakarta.inject.Inject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
@@ -29,7 +30,11 @@ import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -52,9 +57,15 @@ public class AlfenModbusClientTest {
     @Inject
     MqttConfig mqttConfig;
 
+    @Inject
+    GridPowerService gridPowerService;
+
     @Inject
     WriterConfig writerConfig;
 
+    @Inject
+    ModbusConfig modbusConfig;
+
     @Inject
     Vertx vertx;
 
@@ -68,14 +79,23 @@ public class AlfenModbusClientTest {
     private static final String DEVICE_NAME = "test1";
     private int numPhases;
     private float socketMaxCurrent;
+    private long validTime;
+    /**
+     * Valid time the charger reports after a write of the max current
+     */
+    private long validTimeAfterWrite;
+    private String mode3State;
 
     @BeforeEach
     void setup() {
         numPhases = 2;
         socketMaxCurrent = 0;
+        validTime = 60;
+        validTimeAfterWrite = 60;
+        mode3State = "C2";
         mockClient = Mockito.mock(ModbusTcpClient.class);
         mqttHandler.start();
-        alfenModbusClient = new AlfenModbusClient(vertx, DEVICE_NAME, mockClient, true, mqttPublisher, mqttHandler, writerConfig);
+        alfenModbusClient = new AlfenModbusClient(vertx, DEVICE_NAME, mockClient, true, mqttPublisher, mqttHandler, gridPowerService, writerConfig, modbusConfig);
     }
 
     @AfterEach
@@ -95,6 +115,14 @@ public class AlfenModbusClientTest {
         }).when(mockClient).readHoldingRegisters(Mockito.anyInt(), Mockito.any());
         Mockito.doAnswer(invocation -> {
             LOG.info("Writing holding register");
+            //the registers read back what was written
+            WriteMultipleRegistersRequest req = invocation.getArgument(1, WriteMultipleRegistersRequest.class);
+            if (req.address() == ModbusConst.ID_SOCKET_MAX_CURRENT) {
+                socketMaxCurrent = ByteBuffer.wrap(req.values()).getFloat();
+                validTime = validTimeAfterWrite;
+            } else if (req.address() == ModbusConst.ID_NUM_PHASES) {
+                numPhases = getShort(ByteBuffer.wrap(req.values()));
+            }
             return new WriteMultipleRegistersResponse(123, 1);
         }).when(mockClient).writeMultipleRegisters(anyInt(), any());
     }
@@ -116,6 +144,24 @@ public class AlfenModbusClientTest {
         assertThat(capturedArgument.components().size(), equalTo(9));
     }
 
+    @Test
+    void testDiscoveryItems() throws Exception {
+        useItemOutput();
+        prepare();
+
+        //exec
+        alfenModbusClient.start(false);
+        alfenModbusClient.pollRead();
+
+        //verify: the state topic of the discovery is still published
+        ArgumentCaptor<Discovery> argumentCaptor = ArgumentCaptor.forClass(Discovery.class);
+        verify(mqttPublisher).sendDiscovery(argumentCaptor.capture());
+        String stateTopic = argumentCaptor.getValue().stateTopic();
+        ArgumentCaptor<GroupValues> valuesCaptor = ArgumentCaptor.forClass(GroupValues.class);
+        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq(stateTopic), valuesCaptor.capture());
+        assertThat(valuesCaptor.getValue().getFloat(ModbusConst.ID_REAL_POWER_SUM), equalTo(testFloatValue));
+    }
+
     @Test
     void testRead() throws Exception {
         prepare();
@@ -124,33 +170,197 @@ public class AlfenModbusClientTest {
         alfenModbusClient.pollRead();
 
         //verify
-        ArgumentCaptor<Map<Integer, Object>> argumentCaptor = ArgumentCaptor.forClass(Map.class);
-        verify(mqttPublisher, times(4)).sendModbus(any(), any(), any(), anyInt());
-        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq("test1"),
-                ArgumentMatchers.eq(ModbusConst.PRODUCT_IDENTIFICATION.name()),
-                argumentCaptor.capture(),
-                ArgumentMatchers.eq(ModbusConst.ADDR_GENERIC));
+        ArgumentCaptor<GroupValues> argumentCaptor = ArgumentCaptor.forClass(GroupValues.class);
+        verify(mqttPublisher, times(4)).sendModbus(any(), any());
+        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.PRODUCT_IDENTIFICATION, ModbusConst.ADDR_GENERIC)), argumentCaptor.capture());
         assertThat(argumentCaptor.getValue().size(), equalTo(ModbusConst.PRODUCT_IDENTIFICATION.items().size()));
 
-        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq("test1"),
-                ArgumentMatchers.eq(ModbusConst.STATUS.name()),
-                argumentCaptor.capture(),
-                ArgumentMatchers.eq(1));
+        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.STATUS, 1)), argumentCaptor.capture());
         assertThat(argumentCaptor.getValue().size(), equalTo(ModbusConst.STATUS.items().size()));
 
-        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq("test1"),
-                ArgumentMatchers.eq(ModbusConst.STATION_STATUS.name()),
-                argumentCaptor.capture(),
-                ArgumentMatchers.eq(ModbusConst.ADDR_GENERIC));
+        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.STATION_STATUS, ModbusConst.ADDR_GENERIC)), argumentCaptor.capture());
         assertThat(argumentCaptor.getValue().size(), equalTo(ModbusConst.STATION_STATUS.items().size()));
 
-        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq("test1"),
-                ArgumentMatchers.eq(ModbusConst.SOCKET_MEASUREMENT.name()),
-                argumentCaptor.capture(),
-                ArgumentMatchers.eq(1));
-        Map<?, Object> socketMeasure = argumentCaptor.getValue();
+        verify(mqttPublisher).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.SOCKET_MEASUREMENT, 1)), argumentCaptor.capture());
+        GroupValues socketMeasure = argumentCaptor.getValue();
         assertThat(socketMeasure.size(), equalTo(ModbusConst.SOCKET_MEASUREMENT.items().size()));
-        assertThat(socketMeasure.get(344), equalTo(testFloatValue)); //real power sum
+        assertThat(socketMeasure.getFloat(344), equalTo(testFloatValue)); //real power sum
+        assertThat(socketMeasure.getLong(301), equalTo(0x04L)); //meter timestamp, unsigned64
+
+        SocketSnapshot snapshot = alfenModbusClient.getSocket(1).orElseThrow();
+        assertThat(snapshot.realPowerSum(), equalTo(testFloatValue));
+        assertThat(snapshot.current(1), equalTo(5.1f));
+        assertThat(snapshot.numPhases(), equalTo(numPhases));
+        assertThat(snapshot.maxCurrent(), equalTo(socketMaxCurrent));
+        assertThat(alfenModbusClient.getSocketRealPowerSum(1).orElseThrow(), equalTo(Math.round(testFloatValue)));
+    }
+
+    @Test
+    void testReadTiered() throws Exception {
+        prepare();
+
+        //exec
+        alfenModbusClient.pollRead();
+        alfenModbusClient.pollRead();
+
+        //verify: static data only once, measurements every cycle
+        verifyReads(ModbusConst.PRODUCT_IDENTIFICATION, ModbusConst.ADDR_GENERIC, 1);
+        verifyReads(ModbusConst.STATION_STATUS, ModbusConst.ADDR_GENERIC, 1);
+        verifyReads(ModbusConst.SOCKET_MEASUREMENT, 1, 2);
+        verifyReads(ModbusConst.STATUS, 1, 2);
+    }
+
+    @Test
+    void testReadUnchanged() throws Exception {
+        prepare();
+
+        //exec
+        alfenModbusClient.pollRead();
+        SocketSnapshot first = alfenModbusClient.getSocket(1).orElseThrow();
+        alfenModbusClient.pollRead();
+
+        //verify: same registers, not published again. Snapshot is still refreshed.
+        verifyReads(ModbusConst.SOCKET_MEASUREMENT, 1, 2);
+        verify(mqttPublisher, times(1)).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.SOCKET_MEASUREMENT, 1)), any());
+        assertThat(alfenModbusClient.getSocket(1).orElseThrow().sequence() > first.sequence(), equalTo(true));
+
+        //exec: status changes
+        socketMaxCurrent = 10f;
+        alfenModbusClient.pollRead();
+
+        //verify
+        ArgumentCaptor<GroupValues> argumentCaptor = ArgumentCaptor.forClass(GroupValues.class);
+        verify(mqttPublisher, times(2)).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.STATUS, 1)), argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getFloat(ModbusConst.ID_SOCKET_MAX_CURRENT), equalTo(10f));
+        verify(mqttPublisher, times(1)).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.SOCKET_MEASUREMENT, 1)), any());
+    }
+
+    private void useItemOutput() {
+        ModbusConfig.Publish publish = mock(ModbusConfig.Publish.class, AdditionalAnswers.delegatesTo(modbusConfig.publish()));
+        doReturn(ModbusConfig.Output.ITEM).when(publish).output();
+        ModbusConfig itemConfig = mock(ModbusConfig.class, AdditionalAnswers.delegatesTo(modbusConfig));
+        doReturn(publish).when(itemConfig).publish();
+        alfenModbusClient.close();
+        alfenModbusClient = new AlfenModbusClient(vertx, DEVICE_NAME, mockClient, true, mqttPublisher, mqttHandler, gridPowerService, writerConfig, itemConfig);
+    }
+
+    @Test
+    void testReadItems() throws Exception {
+        useItemOutput();
+        prepare();
+
+        //exec
+        alfenModbusClient.pollRead();
+        alfenModbusClient.pollRead();
+
+        //verify: every item once, no group documents except the one of the discovery
+        verify(mqttPublisher, times(1)).sendModbus(any(), any());
+        verify(mqttPublisher, times(1)).sendModbus(ArgumentMatchers.eq(topic(ModbusConst.SOCKET_MEASUREMENT, 1)), any());
+        verify(mqttPublisher, times(1)).sendModbusItem("alfen/modbus/state/test1/1/real_power_sum", Float.toString(testFloatValue));
+        verify(mqttPublisher, times(1)).sendModbusItem("alfen/modbus/state/test1/1/voltage_phase_v_l1_n", "5.1");
+        verify(mqttPublisher, times(1)).sendModbusItem("alfen/modbus/state/test1/1/mode_3_state", "C2");
+
+        //exec: only the changed item is published
+        socketMaxCurrent = 10f;
+        alfenModbusClient.pollRead();
+
+        //verify
+        verify(mqttPublisher, times(1)).sendModbusItem("alfen/modbus/state/test1/1/modbus_slave_max_current", "10.0");
+        verify(mqttPublisher, times(1)).sendModbusItem("alfen/modbus/state/test1/1/real_power_sum", Float.toString(testFloatValue));
+    }
+
+    @Test
+    void testReadAdaptive() throws Exception {
+        prepare();
+        mode3State = "A";
+
+        //exec: no car, measurement slows down after the first read
+        alfenModbusClient.pollRead();
+        alfenModbusClient.pollRead();
+
+        //verify
+        assertThat(alfenModbusClient.getSocket(1).orElseThrow().isCharging(), equalTo(false));
+        verifyReads(ModbusConst.SOCKET_MEASUREMENT, 1, 1);
+
+        //exec: car starts charging, picked up by the status read. Measurement is back on the next cycle.
+        mode3State = "C2";
+        alfenModbusClient.pollRead();
+        alfenModbusClient.pollRead();
+
+        //verify
+        assertThat(alfenModbusClient.getSocket(1).orElseThrow().isCharging(), equalTo(true));
+        verifyReads(ModbusConst.SOCKET_MEASUREMENT, 1, 2);
+        verifyReads(ModbusConst.STATUS, 1, 4);
+    }
+
+    private static String topic(ModbusConst.Group group, int unitId) {
+        return "alfen/modbus/state/" + DEVICE_NAME + "/" + unitId + "/" + group.name();
+    }
+
+    private void verifyReads(ModbusConst.Group group, int unitId, int times) throws Exception {
+        verify(mockClient, times(times)).readHoldingRegisters(ArgumentMatchers.eq(unitId),
+                ArgumentMatchers.argThat(req -> req.address() == group.startOffset()));
+    }
+
+    @Test
+    void testSnapshotDuringPoll() throws Exception {
+        prepare();
+        alfenModbusClient.pollRead();
+        SocketSnapshot first = alfenModbusClient.getSocket(1).orElseThrow();
+
+        //block the next poll inside the modbus read
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocationOnMock -> {
+            reading.countDown();
+            release.await();
+            return new ReadHoldingRegistersResponse(makeRegisters(invocationOnMock.getArgument(0, Integer.class),
+                    invocationOnMock.getArgument(1, ReadHoldingRegistersRequest.class)));
+        }).when(mockClient).readHoldingRegisters(Mockito.anyInt(), Mockito.any());
+        Thread poller = new Thread(alfenModbusClient::pollRead);
+        poller.start();
+        assertThat(reading.await(5, TimeUnit.SECONDS), equalTo(true));
+
+        //readers don't wait for the poll
+        CompletableFuture<Optional<Integer>> power = CompletableFuture.supplyAsync(() -> alfenModbusClient.getSocketRealPowerSum(1));
+        assertThat(power.get(1, TimeUnit.SECONDS).orElseThrow(), equalTo(Math.round(testFloatValue)));
+        assertThat(alfenModbusClient.getSocket(1).orElseThrow().sequence(), equalTo(first.sequence()));
+
+        release.countDown();
+        poller.join(5_000);
+        assertThat(alfenModbusClient.getSocket(1).orElseThrow().sequence() > first.sequence(), equalTo(true));
+    }
+
+    @Test
+    void testReadPipelined() throws Exception {
+        ModbusConfig pipelined = mock(ModbusConfig.class, AdditionalAnswers.delegatesTo(modbusConfig));
+        doReturn(4).when(pipelined).maxInFlight();
+        alfenModbusClient.close();
+        alfenModbusClient = new AlfenModbusClient(vertx, DEVICE_NAME, mockClient, true, mqttPublisher, mqttHandler, gridPowerService, writerConfig, pipelined);
+
+        //answer all requests later from another thread, keeping track of how many are outstanding
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger maxOutstanding = new AtomicInteger();
+        Mockito.doAnswer(invocationOnMock -> {
+            int unitId = invocationOnMock.getArgument(0, Integer.class);
+            ReadHoldingRegistersRequest req = invocationOnMock.getArgument(1, ReadHoldingRegistersRequest.class);
+            maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                outstanding.decrementAndGet();
+                return new ReadHoldingRegistersResponse(makeRegisters(unitId, req));
+            }, CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+        }).when(mockClient).readHoldingRegistersAsync(Mockito.anyInt(), Mockito.any());
+
+        //exec
+        alfenModbusClient.pollRead();
+
+        //verify
+        verify(mockClient, never()).readHoldingRegisters(anyInt(), any());
+        verify(mqttPublisher, times(4)).sendModbus(any(), any());
+        assertThat(maxOutstanding.get(), equalTo(2));
+        SocketSnapshot snapshot = alfenModbusClient.getSocket(1).orElseThrow();
+        assertThat(snapshot.realPowerSum(), equalTo(testFloatValue));
+        assertThat(snapshot.numPhases(), equalTo(numPhases));
     }
 
     @Test
@@ -181,15 +391,117 @@ public class AlfenModbusClientTest {
 
         verifyNumPhases(argumentCaptor.getAllValues().get(1), 1); //1 phase
 
-        // every 1 sec the values will be updated. The num phases did not change.
+        // the writer keeps requesting the same setting, which is already on the charger: nothing more is written
+        verify(mockClient, after(1_000).times(2)).writeMultipleRegisters(anyInt(), any());
+
+        // a status read that shows the same values doesn't cause a write either
+        alfenModbusClient.pollRead();
+        verify(mockClient, after(500).times(2)).writeMultipleRegisters(anyInt(), any());
+
+        // the charger lost the setting, e.g. after a restart: written again
+        socketMaxCurrent = 0;
+        alfenModbusClient.pollRead();
         ArgumentCaptor<WriteMultipleRegistersRequest> argumentCaptor2 = ArgumentCaptor.forClass(WriteMultipleRegistersRequest.class);
         verify(mockClient, timeout(10_000).times(3)).writeMultipleRegisters(anyInt(), argumentCaptor2.capture());
-        assertThat(argumentCaptor2.getAllValues().size(), equalTo(3));
 
         WriteMultipleRegistersRequest third = argumentCaptor2.getAllValues().get(2);
 
         assertThat(third.address(), equalTo(ModbusConst.ITEM_MAX_CURRENT.start())); //max current
         assertThat(ByteBuffer.wrap(third.values()).getFloat(), equalTo(6f)); //6 amp
+
+        // the setting is about to run out: written again, even though it didn't change
+        validTime = 5;
+        alfenModbusClient.pollRead();
+        ArgumentCaptor<WriteMultipleRegistersRequest> argumentCaptor3 = ArgumentCaptor.forClass(WriteMultipleRegistersRequest.class);
+        verify(mockClient, timeout(10_000).times(4)).writeMultipleRegisters(anyInt(), argumentCaptor3.capture());
+
+        WriteMultipleRegistersRequest fourth = argumentCaptor3.getAllValues().get(3);
+
+        assertThat(fourth.address(), equalTo(ModbusConst.ITEM_MAX_CURRENT.start())); //max current
+        assertThat(ByteBuffer.wrap(fourth.values()).getFloat(), equalTo(6f)); //6 amp
+        verify(mockClient, after(1_500).times(4)).writeMultipleRegisters(anyInt(), any());
+    }
+
+    @Test
+    void testWriteStaleDisables() throws Exception {
+        prepare();
+        alfenModbusClient.start(false);
+        alfenModbusClient.pollRead();
+        MqttClient client = MqttClient.create(vertx);
+        client.connect(mqttConfig.port(), mqttConfig.host()).toCompletionStage().toCompletableFuture().join();
+
+        //charging: 6A on 3 phases
+        client.publish("alfen/set/" + DEVICE_NAME + "/1/mode", Buffer.buffer("FAST"), MqttQoS.AT_LEAST_ONCE, false, false);
+        ArgumentCaptor<WriteMultipleRegistersRequest> argumentCaptor = ArgumentCaptor.forClass(WriteMultipleRegistersRequest.class);
+        verify(mockClient, timeout(10_000).times(2)).writeMultipleRegisters(anyInt(), argumentCaptor.capture());
+        assertThat(ByteBuffer.wrap(argumentCaptor.getAllValues().getFirst().values()).getFloat(), equalTo(6f));
+
+        //PV_ONLY without any grid reading: stale, charging stops
+        client.publish("alfen/set/" + DEVICE_NAME + "/1/mode", Buffer.buffer("PV_ONLY"), MqttQoS.AT_LEAST_ONCE, false, false);
+        ArgumentCaptor<WriteMultipleRegistersRequest> argumentCaptor2 = ArgumentCaptor.forClass(WriteMultipleRegistersRequest.class);
+        verify(mockClient, timeout(10_000).times(3)).writeMultipleRegisters(anyInt(), argumentCaptor2.capture());
+        WriteMultipleRegistersRequest third = argumentCaptor2.getAllValues().get(2);
+        assertThat(third.address(), equalTo(ModbusConst.ITEM_MAX_CURRENT.start()));
+        assertThat(ByteBuffer.wrap(third.values()).getFloat(), equalTo(0f));
+        assertThat(socketMaxCurrent, equalTo(0f));
+    }
+
+    @Test
+    void testKeepAlive() throws Exception {
+        prepare();
+        alfenModbusClient.pollRead();
+        alfenModbusClient.setState(1, 6, numPhases);
+        verify(mockClient, timeout(1_000).times(1)).writeMultipleRegisters(anyInt(), any());
+
+        //no new requests: the keep-alive writes the setting again just before it runs out
+        validTime = 11;
+        alfenModbusClient.pollRead();
+        ArgumentCaptor<WriteMultipleRegistersRequest> argumentCaptor = ArgumentCaptor.forClass(WriteMultipleRegistersRequest.class);
+        verify(mockClient, timeout(5_000).times(2)).writeMultipleRegisters(anyInt(), argumentCaptor.capture());
+        assertThat(argumentCaptor.getAllValues().get(1).address(), equalTo(ModbusConst.ITEM_MAX_CURRENT.start()));
+        assertThat(ByteBuffer.wrap(argumentCaptor.getAllValues().get(1).values()).getFloat(), equalTo(6f));
+
+        //renewed for the full valid time
+        verify(mockClient, after(1_500).times(2)).writeMultipleRegisters(anyInt(), any());
+    }
+
+    @Test
+    void testKeepAliveValidTimeUnknown() throws Exception {
+        //firmware that reports no valid time
+        validTime = 0;
+        validTimeAfterWrite = 0;
+        prepare();
+        alfenModbusClient.pollRead();
+        alfenModbusClient.setState(1, 6, numPhases);
+        verify(mockClient, timeout(1_000).times(1)).writeMultipleRegisters(anyInt(), any());
+
+        //only the change is written, there is no keep-alive to time
+        alfenModbusClient.pollRead();
+        alfenModbusClient.pollRead();
+        verify(mockClient, after(3_000).times(1)).writeMultipleRegisters(anyInt(), any());
+    }
+
+    @Test
+    void testWriteCoalesced() throws Exception {
+        prepare();
+        alfenModbusClient.pollRead();
+        CountDownLatch stalled = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            stalled.await();
+            return new WriteMultipleRegistersResponse(123, 1);
+        }).when(mockClient).writeMultipleRegisters(anyInt(), any());
+
+        //the device stalls on the first write, the requests in the meantime only keep the latest state
+        alfenModbusClient.setState(1, 6, numPhases);
+        verify(mockClient, timeout(1_000).times(1)).writeMultipleRegisters(anyInt(), any());
+        for (int i = 0; i < 100; i++) {
+            alfenModbusClient.setState(1, 7 + i % 4, numPhases);
+        }
+        stalled.countDown();
+
+        ArgumentCaptor<WriteMultipleRegistersRequest> argumentCaptor = ArgumentCaptor.forClass(WriteMultipleRegistersRequest.class);
+        verify(mockClient, after(500).times(2)).writeMultipleRegisters(anyInt(), argumentCaptor.capture());
+        assertThat(ByteBuffer.wrap(argumentCaptor.getAllValues().get(1).values()).getFloat(), equalTo(10f));
     }
 
     private void verifyNumPhases(WriteMultipleRegistersRequest sec, int expected) {
@@ -233,6 +545,8 @@ public class AlfenModbusClientTest {
             case ModbusConst.ID_REAL_POWER_SUM -> buf.putFloat(testFloatValue); //real power sum
             case ModbusConst.ID_SOCKET_MAX_CURRENT -> buf.putFloat(socketMaxCurrent);
             case ModbusConst.ID_NUM_PHASES -> buf.putShort((short) numPhases);
+            case ModbusConst.ID_MAX_CURRENT_VALID_TIME -> buf.putInt((int) validTime);
+            case ModbusConst.ID_MODE3_STATE -> buf.put(mode3State.getBytes(StandardCharsets.UTF_8));
             default -> {
                 switch (i.type()) {
                     case STRING -> buf.put("x".getBytes(StandardCharsets.UTF_8));
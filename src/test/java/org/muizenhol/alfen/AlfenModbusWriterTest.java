@@ -1,6 +1,9 @@
 package org.muizenhol.alfen;
 
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -8,9 +11,9 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -18,35 +21,49 @@ import static org.mockito.Mockito.*;
 
 public class AlfenModbusWriterTest {
 
-    private record Listener(MqttHandler.Listener l, Pattern p) {
-    }
-
     AlfenModbusClient client;
     MqttHandler mqttHandler;
+    GridPowerService gridPowerService;
     Vertx vertx;
-    Listener listenerSet;
-    Listener listenerPowerConsumed;
-    Listener listenerPowerProduced;
-    Listener listenerSolar;
+    MqttHandler.Listener listenerSet;
+    GridPowerService.Listener listenerGridPower;
     AlfenModbusWriter writer;
     private static final String CHARGER_NAME = "dummy";
     private static final int SOCKET = 25;
-    private Integer chargerPowerConsumed;
     private int disableCount = 0;
     private int setStateCount = 0;
+    /**
+     * Handlers run on the writer context. Run right away unless queueContext is set.
+     */
+    private final List<Handler<Void>> onContext = new ArrayList<>();
+    private boolean queueContext = false;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     public void beforeEach() {
         disableCount = 0;
         setStateCount = 0;
         client = Mockito.mock(AlfenModbusClient.class);
-        mqttHandler = Mockito.mock(MqttHandler.class);
         vertx = Mockito.mock(Vertx.class);
-        chargerPowerConsumed = null;
-        WriterConfig writerConfig = new WriterConfig() {
+        Context context = Mockito.mock(Context.class);
+        doAnswer(invocation -> {
+            Handler<Void> handler = invocation.getArgument(0);
+            if (queueContext) {
+                onContext.add(handler);
+            } else {
+                handler.handle(null);
+            }
+            return null;
+        }).when(context).runOnContext(any());
+        when(vertx.getOrCreateContext()).thenReturn(context);
+        createWriter(writerConfig(false, WriterConfig.Trigger.TIMER));
+    }
+
+    private static WriterConfig writerConfig(boolean enabled, WriterConfig.Trigger trigger) {
+        return new WriterConfig() {
             @Override
             public boolean enabled() {
-                return false;
+                return enabled;
             }
 
             @Override
@@ -54,56 +71,70 @@ public class AlfenModbusWriterTest {
                 return Duration.ofMillis(100);
             }
 
+            @Override
+            public WriterConfig.Trigger trigger() {
+                return trigger;
+            }
+
+            @Override
+            public Duration minSpacing() {
+                return Duration.ofHours(1);
+            }
+
             @Override
             public int minPower() {
                 return 6;
             }
-        };
 
-        writer = new AlfenModbusWriter(null, client, CHARGER_NAME, SOCKET, mqttHandler, writerConfig);
+            @Override
+            public Duration gridMaxAge() {
+                return Duration.ofMinutes(1);
+            }
+
+            @Override
+            public Duration socketMaxAge() {
+                return Duration.ofMinutes(1);
+            }
+
+            @Override
+            public Optional<WriterConfig.StaleAction> staleAction() {
+                return Optional.empty();
+            }
+        };
+    }
 
-        listenerSet = registerMock(AlfenModbusWriter.TOPIC_SET);
-        listenerPowerConsumed = registerMock(AlfenModbusWriter.TOPIC_POWER_CONSUMED);
-        listenerPowerProduced = registerMock(AlfenModbusWriter.TOPIC_POWER_PRODUCED);
-        listenerSolar = registerMock(AlfenModbusWriter.TOPIC_SOLAR);
+    private void createWriter(WriterConfig writerConfig) {
+        mqttHandler = Mockito.mock(MqttHandler.class);
+        gridPowerService = Mockito.mock(GridPowerService.class);
+        writer = new AlfenModbusWriter(vertx, client, CHARGER_NAME, SOCKET, mqttHandler, gridPowerService, writerConfig);
 
-        doAnswer(invocation -> Optional.ofNullable(chargerPowerConsumed)).when(client).getSocketRealPowerSum(SOCKET);
+        listenerSet = registerMock("alfen/set/" + CHARGER_NAME + "/+/+");
+        ArgumentCaptor<GridPowerService.Listener> gridPowerCaptor = ArgumentCaptor.forClass(GridPowerService.Listener.class);
+        verify(gridPowerService).addListener(gridPowerCaptor.capture());
+        listenerGridPower = gridPowerCaptor.getValue();
     }
 
-    private Listener registerMock(String pattern) {
+    private MqttHandler.Listener registerMock(String topicFilter) {
         ArgumentCaptor<MqttHandler.Listener> argumentCaptor = ArgumentCaptor.forClass(MqttHandler.Listener.class);
-        ArgumentCaptor<Pattern> argumentCaptor2 = ArgumentCaptor.forClass(Pattern.class);
-        verify(mqttHandler).register(argumentCaptor2.capture(), ArgumentMatchers.eq(pattern), argumentCaptor.capture());
-        return new Listener(argumentCaptor.getValue(), argumentCaptor2.getValue());
+        verify(mqttHandler).register(ArgumentMatchers.eq(topicFilter), argumentCaptor.capture());
+        return argumentCaptor.getValue();
     }
 
     private void write(String payload) {
         String topic = "alfen/set/" + CHARGER_NAME + "/" + SOCKET + "/mode";
-        Matcher m = listenerSet.p.matcher(topic);
-        if (!m.matches()) {
-            throw new IllegalStateException("no match");
-        }
-        listenerSet.l.handleMessage(topic, m, payload);
+        listenerSet.handleMessage(topic, List.of(Integer.toString(SOCKET), "mode"), Buffer.buffer(payload));
     }
 
     private void writeEnergy(int powerProduced, int powerConsumed) {
-        Matcher m1 = listenerPowerProduced.p.matcher(AlfenModbusWriter.TOPIC_POWER_PRODUCED);
-        if (!m1.matches()) {
-            throw new IllegalStateException("no match");
-        }
-        listenerPowerProduced.l.handleMessage(AlfenModbusWriter.TOPIC_POWER_PRODUCED, m1, Double.toString(powerProduced / 1000.));
-
-        Matcher m2 = listenerPowerConsumed.p.matcher(AlfenModbusWriter.TOPIC_POWER_CONSUMED);
-        if (!m2.matches()) {
-            throw new IllegalStateException("no match");
-        }
-        listenerPowerConsumed.l.handleMessage(AlfenModbusWriter.TOPIC_POWER_CONSUMED, m2, Double.toString(powerConsumed / 1000.));
+        listenerGridPower.onReading(GridPowerService.Input.PRODUCED, powerProduced);
+        listenerGridPower.onReading(GridPowerService.Input.CONSUMED, powerConsumed);
     }
 
     @Test
     public void test1() {
         // charger = off
-        chargerPowerConsumed = 0;
+        writer.onMeasurement(0);
+        writeEnergy(0, 0);
         write("PV_AND_MIN");
         writer.update(1L);
         verify(client).setState(ArgumentMatchers.eq(SOCKET), ArgumentMatchers.eq(6f), ArgumentMatchers.eq(1));
@@ -130,7 +161,8 @@ public class AlfenModbusWriterTest {
     @Test
     public void testPvOnly() {
         // charger = off
-        chargerPowerConsumed = 0;
+        writer.onMeasurement(0);
+        writeEnergy(0, 0);
         write("PV_ONLY");
         writer.update(1L);
         checkDisabled();
@@ -166,7 +198,8 @@ public class AlfenModbusWriterTest {
     @Test
     public void testPvAndMinOnly() {
         // charger = off
-        chargerPowerConsumed = 0;
+        writer.onMeasurement(0);
+        writeEnergy(0, 0);
         write("PV_AND_MIN");
         writer.update(1L);
         // minimal power supply
@@ -190,4 +223,79 @@ public class AlfenModbusWriterTest {
         writer.update(1L);
         checkSetState(6f);
     }
+
+    @Test
+    public void testEventTrigger() {
+        createWriter(writerConfig(true, WriterConfig.Trigger.EVENT));
+
+        //first reading updates immediately, still in mode OFF
+        writer.onMeasurement(0);
+        checkDisabled();
+
+        //within the min spacing: postponed to the end of it
+        write("PV_AND_MIN");
+        writeEnergy(2300, 0);
+        verify(client, never()).setState(ArgumentMatchers.eq(SOCKET), ArgumentMatchers.anyFloat(), ArgumentMatchers.anyInt());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Handler<Long>> pending = ArgumentCaptor.forClass(Handler.class);
+        //only one postponed update for all readings
+        verify(vertx).setTimer(ArgumentMatchers.longThat(ms -> ms > 1000), pending.capture());
+
+        pending.getValue().handle(0L);
+        checkSetState(10f);
+    }
+
+    @Test
+    public void testEventTriggerOnContext() {
+        createWriter(writerConfig(true, WriterConfig.Trigger.EVENT));
+        queueContext = true;
+
+        //readings come in on other threads, the update only runs on the writer context
+        writer.onMeasurement(0);
+        writeEnergy(2300, 0);
+        verify(client, never()).disable(ArgumentMatchers.eq(SOCKET));
+        assertThat(onContext.size(), equalTo(3));
+
+        onContext.forEach(handler -> handler.handle(null));
+        checkDisabled();
+    }
+
+    @Test
+    public void testStale() {
+        write("PV_ONLY");
+
+        //no readings yet, e.g. right after startup: never charge from the grid in PV_ONLY
+        writer.update(1L);
+        checkDisabled();
+        verify(client, never()).setState(ArgumentMatchers.eq(SOCKET), ArgumentMatchers.anyFloat(), ArgumentMatchers.anyInt());
+        assertThat(writer.stats().stale(), equalTo(true));
+        assertThat(writer.stats().gridAgeMs(), equalTo(-1L));
+
+        //grid only, the socket measurement is still missing
+        writeEnergy(0, 400);
+        writer.update(1L);
+        checkDisabled();
+
+        writer.onMeasurement(0);
+        writer.update(1L);
+        checkDisabled();
+        assertThat(writer.stats().stale(), equalTo(false));
+        assertThat(writer.stats().staleUpdates(), equalTo(2L));
+
+        //fast charging doesn't depend on the readings
+        write("FAST");
+        writer.update(1L);
+        verify(client).setState(ArgumentMatchers.eq(SOCKET), ArgumentMatchers.eq(6f), ArgumentMatchers.eq(3));
+    }
+
+    @Test
+    public void testStalePvAndMin() {
+        write("PV_AND_MIN");
+
+        //no readings yet: charges at min current, as it would with readings
+        writer.update(1L);
+        checkSetState(6f);
+        verify(client, never()).disable(ArgumentMatchers.eq(SOCKET));
+        assertThat(writer.stats().stale(), equalTo(true));
+    }
 }
@@ -0,0 +1,42 @@
+package org.muizenhol.alfen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class DeadbandTest {
+
+    @Test
+    void testAbsolute() {
+        ModbusConst.Item.Deadband deadband = new ModbusConst.Item.Deadband(1, 0);
+
+        assertThat(deadband.exceeded(230, 230.9), equalTo(false));
+        assertThat(deadband.exceeded(230, 229.1), equalTo(false));
+        assertThat(deadband.exceeded(230, 231.5), equalTo(true));
+    }
+
+    @Test
+    void testRelative() {
+        ModbusConst.Item.Deadband deadband = new ModbusConst.Item.Deadband(10, 0.01);
+
+        //1% of 5000 is more than the absolute 10
+        assertThat(deadband.exceeded(5000, 5040), equalTo(false));
+        assertThat(deadband.exceeded(5000, 5060), equalTo(true));
+        //absolute wins for small values
+        assertThat(deadband.exceeded(100, 105), equalTo(false));
+    }
+
+    @Test
+    void testNone() {
+        assertThat(ModbusConst.Item.Deadband.NONE.exceeded(1, 1), equalTo(false));
+        assertThat(ModbusConst.Item.Deadband.NONE.exceeded(1, 1.0001), equalTo(true));
+        assertThat(ModbusConst.Item.Deadband.NONE.exceeded(Double.NaN, 1), equalTo(true));
+    }
+
+    @Test
+    void testNever() {
+        assertThat(ModbusConst.Item.Deadband.NEVER.exceeded(1, 1_000_000), equalTo(false));
+        assertThat(ModbusConst.Item.Deadband.NEVER.exceeded(Double.NaN, 1), equalTo(false));
+    }
+}
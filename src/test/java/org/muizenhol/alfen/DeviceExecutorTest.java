@@ -0,0 +1,48 @@
+package org.muizenhol.alfen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class DeviceExecutorTest {
+
+    @Test
+    void testStalledDeviceDoesNotBlockOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        try (DeviceExecutor stalled = DeviceExecutor.create(null, "stalled", DeviceExecutor.Mode.VIRTUAL);
+             DeviceExecutor other = DeviceExecutor.create(null, "other", DeviceExecutor.Mode.VIRTUAL)) {
+            stalled.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            other.execute(done::countDown);
+
+            assertThat(done.await(1, TimeUnit.SECONDS), equalTo(true));
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testOrderedPerDevice() throws Exception {
+        StringBuilder order = new StringBuilder();
+        CountDownLatch done = new CountDownLatch(1);
+        try (DeviceExecutor executor = DeviceExecutor.create(null, "test", DeviceExecutor.Mode.VIRTUAL)) {
+            for (int i = 0; i < 5; i++) {
+                int nr = i;
+                executor.execute(() -> order.append(nr));
+            }
+            executor.execute(done::countDown);
+
+            assertThat(done.await(1, TimeUnit.SECONDS), equalTo(true));
+            assertThat(order.toString(), equalTo("01234"));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+public class GridPowerServiceTest {
+
+    MqttHandler mqttHandler;
+    GridPowerService service;
+
+    @BeforeEach
+    public void beforeEach() {
+        mqttHandler = Mockito.mock(MqttHandler.class);
+        //no sources configured, so the defaults apply
+        GridConfig gridConfig = Mockito.mock(GridConfig.class);
+        doReturn(Optional.empty()).when(gridConfig).consumed();
+        doReturn(Optional.empty()).when(gridConfig).produced();
+        doReturn(Optional.empty()).when(gridConfig).solar();
+        service = new GridPowerService(mqttHandler, gridConfig, new ObjectMapper());
+    }
+
+    private MqttHandler.Listener registered(String topic) {
+        ArgumentCaptor<MqttHandler.Listener> argumentCaptor = ArgumentCaptor.forClass(MqttHandler.Listener.class);
+        verify(mqttHandler).register(ArgumentMatchers.eq(topic), argumentCaptor.capture());
+        return argumentCaptor.getValue();
+    }
+
+    @Test
+    public void testFanOut() {
+        GridPowerService.Listener l1 = Mockito.mock(GridPowerService.Listener.class);
+        GridPowerService.Listener l2 = Mockito.mock(GridPowerService.Listener.class);
+        service.addListener(l1);
+        service.addListener(l2);
+
+        //subscribed once, whatever the number of listeners
+        MqttHandler.Listener consumed = registered(GridPowerService.TOPIC_POWER_CONSUMED);
+        MqttHandler.Listener solar = registered(GridPowerService.TOPIC_SOLAR);
+        registered(GridPowerService.TOPIC_POWER_PRODUCED);
+
+        consumed.handleMessage(GridPowerService.TOPIC_POWER_CONSUMED, List.of(), Buffer.buffer("1.25"));
+        solar.handleMessage(GridPowerService.TOPIC_SOLAR, List.of(), Buffer.buffer("{\"data\":{\"Power_real_1_3\":830.0}}"));
+
+        verify(l1).onReading(GridPowerService.Input.CONSUMED, 1250);
+        verify(l2).onReading(GridPowerService.Input.CONSUMED, 1250);
+        verify(l1).onReading(GridPowerService.Input.SOLAR, 830);
+        verify(l2).onReading(GridPowerService.Input.SOLAR, 830);
+
+        service.removeListener(l2);
+        consumed.handleMessage(GridPowerService.TOPIC_POWER_CONSUMED, List.of(), Buffer.buffer("invalid"));
+        consumed.handleMessage(GridPowerService.TOPIC_POWER_CONSUMED, List.of(), Buffer.buffer("0.5"));
+        verify(l1).onReading(GridPowerService.Input.CONSUMED, 500);
+        verify(l2, never()).onReading(GridPowerService.Input.CONSUMED, 500);
+    }
+}
@@ -0,0 +1,49 @@
+package org.muizenhol.alfen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class InputReadingTest {
+
+    private static final long ORIGIN = 1_000_000_000L;
+
+    private static long at(long ms) {
+        return ORIGIN + TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    @Test
+    public void testNeverSet() {
+        InputReading reading = new InputReading(ORIGIN);
+        assertThat(reading.isSet(), equalTo(false));
+        assertThat(reading.ageMillis(at(100)), equalTo(-1L));
+        assertThat(reading.isStale(at(100), Long.MAX_VALUE), equalTo(true));
+    }
+
+    @Test
+    public void testSet() {
+        InputReading reading = new InputReading(ORIGIN);
+        reading.set(-1234, at(0));
+        assertThat(reading.value(), equalTo(-1234));
+        assertThat(reading.ageMillis(at(0)), equalTo(0L));
+
+        reading.set(4567, at(1000));
+        assertThat(reading.value(), equalTo(4567));
+        assertThat(reading.ageMillis(at(1500)), equalTo(500L));
+        assertThat(reading.isStale(at(1500), 500), equalTo(false));
+        assertThat(reading.isStale(at(1501), 500), equalTo(true));
+    }
+
+    @Test
+    public void testClamped() {
+        InputReading reading = new InputReading(ORIGIN);
+        reading.set(Integer.MAX_VALUE, at(10));
+        assertThat(reading.value(), equalTo(InputReading.MAX_VALUE));
+        reading.set(Integer.MIN_VALUE, at(10));
+        assertThat(reading.value(), equalTo(InputReading.MIN_VALUE));
+        assertThat(reading.ageMillis(at(10)), equalTo(0L));
+    }
+}
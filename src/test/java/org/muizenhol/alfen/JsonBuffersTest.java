@@ -0,0 +1,51 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.muizenhol.alfen.data.Evcc;
+import org.muizenhol.alfen.data.PropertyParsed;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class JsonBuffersTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonBuffers jsonBuffers = new JsonBuffers(objectMapper);
+
+    private void assertSameAsObjectMapper(Object payload) throws Exception {
+        assertThat(jsonBuffers.write(payload).toString(), equalTo(objectMapper.writeValueAsString(payload)));
+    }
+
+    @Test
+    void testProperties() throws Exception {
+        assertSameAsObjectMapper(List.of(
+                new PropertyParsed("Voltage", "2221_3", 230.5),
+                new PropertyParsed("Count", "2060_0", 5),
+                new PropertyParsed("Name", "2051_0", "x\"y"),
+                new PropertyParsed("Unknown", "0", null)));
+    }
+
+    @Test
+    void testCharger() throws Exception {
+        assertSameAsObjectMapper(new Evcc.Charger(true, "C", 1234.5f));
+        assertSameAsObjectMapper(new Evcc.Charger(false, "A", null));
+    }
+
+    @Test
+    void testFallback() throws Exception {
+        assertSameAsObjectMapper(new PollStats(1, 2, 3, 4));
+        assertSameAsObjectMapper(Map.of("key", 1));
+    }
+
+    @Test
+    void testLargePayload() throws Exception {
+        String big = "x".repeat(10_000);
+        assertSameAsObjectMapper(List.of(new PropertyParsed("big", "1", big)));
+        //buffers grow beyond the size hint
+        assertSameAsObjectMapper(List.of(new PropertyParsed("big", "1", big + big)));
+    }
+}
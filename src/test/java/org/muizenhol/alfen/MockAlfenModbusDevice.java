@@ -15,16 +15,21 @@ public class MockAlfenModbusDevice implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    private final NetServer netServer;
+
+    /**
+     * @param port 0 to pick a free port, see {@link #port()}
+     */
     public MockAlfenModbusDevice(Vertx vertx, int port) {
         try {
 
-            NetServer netServer = vertx.createNetServer();
+            netServer = vertx.createNetServer();
             LOG.info("Creating mock alfen modbus device: {}", netServer);
             netServer.connectHandler(this::connectHandler);
             netServer.exceptionHandler(t -> {
                 LOG.warn("Error connecting to alfen modbus device", t);
             });
-            NetServer result = netServer.listen(port, "0.0.0.0").result();
+            NetServer result = netServer.listen(port, "0.0.0.0").toCompletionStage().toCompletableFuture().join();
 
 //            netServer.listene
             LOG.info("Creating mock alfen modbus device OK: {}", result);
@@ -34,6 +39,10 @@ public class MockAlfenModbusDevice implements AutoCloseable {
         }
     }
 
+    public int port() {
+        return netServer.actualPort();
+    }
+
     public static String bufferToHex(Buffer buffer) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < buffer.length(); i++) {
@@ -68,6 +77,7 @@ public class MockAlfenModbusDevice implements AutoCloseable {
     @Override
     public void close() throws Exception {
         LOG.info("Closing mock alfen modbus device");
+        netServer.close();
     }
 
 }
@@ -0,0 +1,77 @@
+package org.muizenhol.alfen;
+
+import com.digitalpetri.modbus.client.ModbusTcpClient;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ModbusTransportResourcesTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int NR_OF_DEVICES = 50;
+    private static final int EVENT_LOOP_THREADS = 2;
+
+    private Vertx vertx;
+    private final List<MockAlfenModbusDevice> devices = new ArrayList<>();
+    private final List<ModbusTcpClient> clients = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        for (ModbusTcpClient client : clients) {
+            client.disconnect();
+        }
+        for (MockAlfenModbusDevice device : devices) {
+            device.close();
+        }
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void testThreadCountFlat() throws Exception {
+        for (int i = 0; i < NR_OF_DEVICES; i++) {
+            devices.add(new MockAlfenModbusDevice(vertx, 0));
+        }
+        int threadsBefore = threadCount();
+
+        //a dedicated group, so the number of event loop threads doesn't depend on the number of cores
+        try (ModbusTransportResources resources = new ModbusTransportResources(vertx, EVENT_LOOP_THREADS)) {
+            connect(devices.getFirst(), resources);
+            int threadsOne = threadCount();
+            for (MockAlfenModbusDevice device : devices.subList(1, NR_OF_DEVICES)) {
+                connect(device, resources);
+            }
+            int threadsAll = threadCount();
+            LOG.info("Threads before: {}, after connecting 1 device: {}, {} devices: {}", threadsBefore, threadsOne, NR_OF_DEVICES, threadsAll);
+
+            //at most the event loops of the group the first device didn't start, plus one the jvm may start by itself
+            //(e.g. a compiler thread). Nothing per device.
+            assertThat(threadsAll - threadsOne, lessThanOrEqualTo(EVENT_LOOP_THREADS));
+        }
+    }
+
+    private void connect(MockAlfenModbusDevice device, ModbusTransportResources resources) throws Exception {
+        ModbusTcpClient client = AlfenModbusClient.createClient("127.0.0.1", device.port(), resources);
+        client.connect();
+        clients.add(client);
+    }
+
+    private static int threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+}
@@ -18,11 +18,10 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -55,7 +54,7 @@ public class MqttHandlerTest {
         Map<String, Integer> resultMap = Collections.synchronizedMap(new HashMap<>());
         MqttHandler.Listener l = new MqttHandler.Listener() {
             @Override
-            public void handleMessage(String topic, Matcher matchedTopic, String payload) {
+            public void handleMessage(String topic, List<String> wildcards, Buffer payload) {
                 LOG.info("Received message on: {}", topic);
                 resultMap.compute(topic, (s, count) -> (count == null ? 1 : count + 1));
             }
@@ -64,11 +63,11 @@ public class MqttHandlerTest {
 
 
         //register before starting
-        mqttHandler.register(Pattern.compile(topic1), topic1, l);
+        mqttHandler.register(topic1, l);
 
         //start and immediately register
         MqttClient client = MqttClient.create(vertx);
-        mqttHandler.register(Pattern.compile(topic2), topic2, l);
+        mqttHandler.register(topic2, l);
 
         eventually(() -> mqttHandler.isStarted());
 
@@ -88,7 +87,7 @@ public class MqttHandlerTest {
         assertThat(resultMap.get(topic2), equalTo(1));
 
         //late register
-        mqttHandler.register(Pattern.compile(topic3), topic3, l);
+        mqttHandler.register(topic3, l);
         LOG.info("publish 2");
         client.publish(topic1, Buffer.buffer("test2"), MqttQoS.AT_LEAST_ONCE, false, false);
         client.publish(topic2, Buffer.buffer("test2"), MqttQoS.AT_LEAST_ONCE, false, false);
@@ -103,8 +102,42 @@ public class MqttHandlerTest {
         assertThat(resultMap.get(topic3), equalTo(1));
     }
 
+    @Test
+    public void testReconnectTwice() {
+        String topic = "/test/reconnect";
+        Map<String, Integer> resultMap = Collections.synchronizedMap(new HashMap<>());
+        mqttHandler.register(topic, (t, wildcards, payload) -> resultMap.merge(t, 1, Integer::sum));
+        //start from a single connection, whatever ran before
+        mqttHandler.stop();
+        testMqttServer.cleanup();
+        mqttHandler.start();
+        try {
+            eventually(() -> mqttHandler.isStarted());
+            for (int outage = 1; outage <= 2; outage++) {
+                LOG.info("Broker outage {}", outage);
+                //drops all connections, the handler has to come back by itself each time
+                testMqttServer.cleanup();
+                eventually(() -> testMqttServer.connections() == 1 && mqttHandler.isStarted(), 50);
+
+                MqttClient client = MqttClient.create(vertx);
+                client.connect(mqttConfig.port(), mqttConfig.host()).toCompletionStage().toCompletableFuture().join();
+                client.publish(topic, Buffer.buffer("test" + outage), MqttQoS.AT_LEAST_ONCE, false, false);
+                int expected = outage;
+                eventually(() -> Integer.valueOf(expected).equals(resultMap.get(topic)));
+                client.disconnect();
+            }
+        } finally {
+            mqttHandler.stop();
+            testMqttServer.cleanup();
+        }
+    }
+
     private void eventually(Supplier<Boolean> supplier) {
-        for (int i = 0; i < 10; i++) {
+        eventually(supplier, 10);
+    }
+
+    private void eventually(Supplier<Boolean> supplier, int tries) {
+        for (int i = 0; i < tries; i++) {
             if (supplier.get()) {
                 return;
             }
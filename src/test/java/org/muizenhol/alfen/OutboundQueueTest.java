@@ -0,0 +1,120 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class OutboundQueueTest {
+
+    private static final OutboundQueue.Policy LATEST = OutboundQueue.Policy.KEEP_LATEST;
+    private static final OutboundQueue.Policy NEVER_DROP = OutboundQueue.Policy.NEVER_DROP;
+
+    @Test
+    public void testKeepLatestReplaces() {
+        OutboundQueue queue = new OutboundQueue(10, 1000);
+        queue.offer("a", Buffer.buffer("1"), false, LATEST, 0);
+        queue.offer("b", Buffer.buffer("1"), false, LATEST, 0);
+        queue.offer("a", Buffer.buffer("22"), false, LATEST, 0);
+
+        assertThat(queue.depth(), equalTo(2));
+        assertThat(queue.bytes(), equalTo(3L));
+        assertThat(queue.dropped(), equalTo(1L));
+        //a keeps its place in the queue, with the new payload
+        assertThat(queue.poll().payload().toString(), equalTo("22"));
+        assertThat(queue.poll().topic(), equalTo("b"));
+        assertThat(queue.poll(), nullValue());
+        assertThat(queue.bytes(), equalTo(0L));
+    }
+
+    @Test
+    public void testNeverDropFirst() {
+        OutboundQueue queue = new OutboundQueue(10, 1000);
+        queue.offer("a", Buffer.buffer("1"), false, LATEST, 0);
+        queue.offer("d", Buffer.buffer("1"), true, NEVER_DROP, 0);
+        queue.offer("d", Buffer.buffer("2"), true, NEVER_DROP, 0);
+
+        assertThat(queue.poll().payload().toString(), equalTo("1"));
+        OutboundQueue.Message second = queue.poll();
+        assertThat(second.topic(), equalTo("d"));
+        assertThat(second.payload().toString(), equalTo("2"));
+        assertThat(queue.poll().topic(), equalTo("a"));
+    }
+
+    @Test
+    public void testFullDropsOldestTelemetry() {
+        OutboundQueue queue = new OutboundQueue(2, 1000);
+        queue.offer("d", Buffer.buffer("1"), false, NEVER_DROP, 0);
+        queue.offer("a", Buffer.buffer("1"), false, LATEST, 0);
+        queue.offer("b", Buffer.buffer("1"), false, LATEST, 0);
+
+        assertThat(queue.depth(), equalTo(2));
+        assertThat(queue.dropped(), equalTo(1L));
+        assertThat(queue.poll().topic(), equalTo("d"));
+        assertThat(queue.poll().topic(), equalTo("b"));
+    }
+
+    @Test
+    public void testMaxBytes() {
+        OutboundQueue queue = new OutboundQueue(10, 4);
+        queue.offer("d", Buffer.buffer("12"), false, NEVER_DROP, 0);
+        queue.offer("e", Buffer.buffer("34"), false, NEVER_DROP, 0);
+        //no telemetry left to drop, so the newest reliable message goes
+        queue.offer("f", Buffer.buffer("56"), false, NEVER_DROP, 0);
+
+        assertThat(queue.depth(), equalTo(2));
+        assertThat(queue.bytes(), equalTo(4L));
+        assertThat(queue.dropped(), equalTo(1L));
+        assertThat(queue.poll().topic(), equalTo("d"));
+        assertThat(queue.poll().topic(), equalTo("e"));
+    }
+
+    @Test
+    public void testRequeue() {
+        OutboundQueue queue = new OutboundQueue(10, 1000);
+        queue.offer("d1", Buffer.buffer("1"), true, NEVER_DROP, 0);
+        queue.offer("d2", Buffer.buffer("1"), true, NEVER_DROP, 0);
+        queue.offer("a", Buffer.buffer("1"), false, LATEST, 0);
+        queue.offer("b", Buffer.buffer("1"), false, LATEST, 0);
+        List<OutboundQueue.Message> sent = List.of(queue.poll(), queue.poll(), queue.poll(), queue.poll());
+        //newer telemetry of b is queued while the first was in flight
+        queue.offer("b", Buffer.buffer("22"), false, LATEST, 0);
+        queue.offer("d3", Buffer.buffer("1"), true, NEVER_DROP, 0);
+
+        queue.requeue(sent);
+
+        assertThat(queue.depth(), equalTo(5));
+        assertThat(queue.bytes(), equalTo(6L));
+        assertThat(queue.dropped(), equalTo(1L));
+        assertThat(queue.poll().topic(), equalTo("d1"));
+        assertThat(queue.poll().topic(), equalTo("d2"));
+        assertThat(queue.poll().topic(), equalTo("d3"));
+        assertThat(queue.poll().topic(), equalTo("a"));
+        assertThat(queue.poll().payload().toString(), equalTo("22"));
+        assertThat(queue.poll(), nullValue());
+    }
+
+    @Test
+    public void testPublishFailed() {
+        OutboundQueue queue = new OutboundQueue(10, 1000);
+        queue.offer("d1", Buffer.buffer("1"), true, NEVER_DROP, 0);
+        queue.offer("d2", Buffer.buffer("1"), true, NEVER_DROP, 0);
+        queue.offer("a", Buffer.buffer("1"), false, LATEST, 0);
+
+        //a reliable message that failed is the next one again, failed telemetry only counts as dropped
+        OutboundQueue.Message failed = queue.poll();
+        queue.requeue(List.of(failed));
+        assertThat(queue.poll(), equalTo(failed));
+        queue.poll();
+        queue.poll();
+        queue.markDropped();
+
+        assertThat(queue.dropped(), equalTo(1L));
+        assertThat(queue.poll(), nullValue());
+        assertThat(queue.bytes(), equalTo(0L));
+    }
+}
@@ -0,0 +1,45 @@
+package org.muizenhol.alfen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class PayloadExtractorTest {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static double plain(String payload) {
+        return PayloadExtractor.plain().extract(Buffer.buffer(payload));
+    }
+
+    private static double pointer(String pointer, String payload) {
+        return PayloadExtractor.pointer(JSON_FACTORY, pointer).extract(Buffer.buffer(payload));
+    }
+
+    @Test
+    public void testPlain() {
+        assertThat(plain("1.25"), equalTo(1.25));
+        assertThat(plain(" -0.5\n"), equalTo(-0.5));
+        assertThat(plain("12"), equalTo(12.0));
+        assertThat(plain("0.001"), equalTo(0.001));
+        assertThat(plain("1e3"), equalTo(1000.0));
+        assertThat(plain(""), equalTo(Double.NaN));
+        assertThat(plain("abc"), equalTo(Double.NaN));
+        assertThat(plain("1.2.3"), equalTo(Double.NaN));
+    }
+
+    @Test
+    public void testPointer() {
+        String payload = "{\"x\":{\"a\":[1,2]},\"data\":{\"V\":230,\"Power_real_1_3\":830.5}}";
+        assertThat(pointer("/data/Power_real_1_3", payload), equalTo(830.5));
+        assertThat(pointer("/x/a/1", payload), equalTo(2.0));
+        assertThat(pointer("/data/missing", payload), equalTo(Double.NaN));
+        assertThat(pointer("/data", payload), equalTo(Double.NaN));
+        assertThat(pointer("/data/value", "{\"data\":{\"value\":\"42\"}}"), equalTo(42.0));
+        assertThat(pointer("", "3.5"), equalTo(3.5));
+        assertThat(pointer("/data", "not json"), equalTo(Double.NaN));
+    }
+}
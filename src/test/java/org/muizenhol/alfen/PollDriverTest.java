@@ -0,0 +1,154 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+
+public class PollDriverTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger started = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    private PollDriver driver(OverrunPolicy policy) {
+        return new PollDriver(mock(Vertx.class), "test", Duration.ofSeconds(1), policy, executor, () -> {
+            started.incrementAndGet();
+            try {
+                release.await();
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void awaitCycles(PollDriver driver, long cycles) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (driver.stats().cycles() < cycles && System.nanoTime() < end) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testSkip() throws Exception {
+        PollDriver driver = driver(OverrunPolicy.SKIP);
+
+        driver.tick();
+        driver.tick();
+        driver.tick();
+        release.countDown();
+        awaitCycles(driver, 1);
+        Thread.sleep(100);
+
+        PollStats stats = driver.stats();
+        assertThat(started.get(), equalTo(1));
+        assertThat(stats.cycles(), equalTo(1L));
+        assertThat(stats.overruns(), equalTo(2L));
+        assertThat(stats.maxDurationMs(), greaterThanOrEqualTo(20L));
+    }
+
+    @Test
+    void testCoalesce() throws Exception {
+        PollDriver driver = driver(OverrunPolicy.COALESCE);
+
+        driver.tick();
+        driver.tick();
+        driver.tick();
+        release.countDown();
+        awaitCycles(driver, 2);
+        Thread.sleep(100);
+
+        //the 2 overruns are merged in 1 extra cycle
+        assertThat(started.get(), equalTo(2));
+        assertThat(driver.stats().cycles(), equalTo(2L));
+        assertThat(driver.stats().overruns(), equalTo(2L));
+    }
+
+    @Test
+    void testRunImmediatelyAfter() throws Exception {
+        //only the first cycle takes longer than the interval
+        PollDriver driver = new PollDriver(mock(Vertx.class), "test", Duration.ofMillis(10), OverrunPolicy.RUN_IMMEDIATELY_AFTER, executor, () -> {
+            if (started.incrementAndGet() == 1) {
+                try {
+                    release.await();
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        driver.tick();
+        driver.tick();
+        release.countDown();
+        awaitCycles(driver, 2);
+        Thread.sleep(100);
+
+        //the overlapping tick and the late cycle result in a single follow-up, the next one waits for the timer
+        assertThat(started.get(), equalTo(2));
+        assertThat(driver.stats().cycles(), equalTo(2L));
+        assertThat(driver.stats().overruns(), equalTo(2L));
+    }
+
+    @Test
+    void testError() throws Exception {
+        PollDriver driver = new PollDriver(mock(Vertx.class), "test", Duration.ofSeconds(1), OverrunPolicy.SKIP, executor, () -> {
+            started.incrementAndGet();
+            throw new AssertionError("test");
+        });
+
+        driver.tick();
+        awaitCycles(driver, 1);
+        driver.tick();
+        awaitCycles(driver, 2);
+
+        assertThat(started.get(), equalTo(2));
+        assertThat(driver.stats().overruns(), equalTo(0L));
+    }
+
+    @Test
+    void testRejected() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PollDriver driver = new PollDriver(mock(Vertx.class), "test", Duration.ofSeconds(1), OverrunPolicy.SKIP, command -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new RejectedExecutionException("test");
+            }
+            executor.execute(command);
+        }, started::incrementAndGet);
+
+        driver.tick();
+        driver.tick();
+        awaitCycles(driver, 1);
+
+        assertThat(started.get(), equalTo(1));
+        assertThat(driver.stats().overruns(), equalTo(0L));
+    }
+
+    @Test
+    void testClosed() {
+        PollDriver driver = driver(OverrunPolicy.SKIP);
+        driver.close();
+
+        driver.tick();
+
+        assertThat(started.get(), equalTo(0));
+    }
+}
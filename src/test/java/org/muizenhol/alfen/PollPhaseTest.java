@@ -0,0 +1,37 @@
+package org.muizenhol.alfen;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class PollPhaseTest {
+
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+
+    @Test
+    void testSpreadEvenly() {
+        assertThat(PollPhase.offset(0, 4, INTERVAL, Duration.ZERO), equalTo(Duration.ZERO));
+        assertThat(PollPhase.offset(1, 4, INTERVAL, Duration.ZERO), equalTo(Duration.ofMillis(250)));
+        assertThat(PollPhase.offset(3, 4, INTERVAL, Duration.ZERO), equalTo(Duration.ofMillis(750)));
+    }
+
+    @Test
+    void testSingle() {
+        assertThat(PollPhase.offset(0, 1, INTERVAL, Duration.ZERO), equalTo(Duration.ZERO));
+    }
+
+    @Test
+    void testJitter() {
+        Duration jitter = Duration.ofMillis(100);
+        for (int i = 0; i < 100; i++) {
+            Duration offset = PollPhase.offset(2, 4, INTERVAL, jitter);
+            assertThat(offset, greaterThanOrEqualTo(Duration.ofMillis(500)));
+            assertThat(offset, lessThan(Duration.ofMillis(600)));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.muizenhol.alfen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ReadPlannerTest {
+
+    private static final int UNIT = 3;
+
+    private static ModbusConst.Group group(String name, int start, int size) {
+        return new ModbusConst.Group(name, start, size, List.of(
+                new ModbusConst.Item(name, start, size, ModbusConst.DataType.STRING)));
+    }
+
+    @Test
+    public void testAdjacentGroupsCombined() {
+        ModbusConst.Group g1 = group("g1", 100, 10);
+        ModbusConst.Group g2 = group("g2", 110, 10);
+        ModbusConst.Group g3 = group("g3", 124, 6); //gap of 4
+
+        List<ReadPlanner.Read> reads = new ReadPlanner(4).plan(UNIT, List.of(g3, g1, g2));
+
+        assertThat(reads.size(), equalTo(1));
+        ReadPlanner.Read read = reads.getFirst();
+        assertThat(read.unitId(), equalTo(UNIT));
+        assertThat(read.address(), equalTo(100));
+        assertThat(read.count(), equalTo(30));
+        assertThat(read.groups(), contains(g1, g2, g3));
+        assertThat(read.byteOffset(g3), equalTo(48));
+    }
+
+    @Test
+    public void testGapTooBig() {
+        ModbusConst.Group g1 = group("g1", 100, 10);
+        ModbusConst.Group g2 = group("g2", 115, 10); //gap of 5
+
+        List<ReadPlanner.Read> reads = new ReadPlanner(4).plan(UNIT, List.of(g1, g2));
+
+        assertThat(reads.size(), equalTo(2));
+        assertThat(reads.get(0).groups(), contains(g1));
+        assertThat(reads.get(1).groups(), contains(g2));
+        assertThat(reads.get(1).byteOffset(g2), equalTo(0));
+    }
+
+    @Test
+    public void testMaxRegisters() {
+        ModbusConst.Group g1 = group("g1", 100, 100);
+        ModbusConst.Group g2 = group("g2", 200, 26);
+
+        List<ReadPlanner.Read> reads = new ReadPlanner(10).plan(UNIT, List.of(g1, g2));
+
+        assertThat(reads.size(), equalTo(2));
+        assertThat(reads.get(0).count(), equalTo(100));
+        assertThat(reads.get(1).count(), equalTo(26));
+    }
+
+    @Test
+    public void testUnmappedTailNotRead() {
+        List<ReadPlanner.Read> reads = new ReadPlanner(8).plan(UNIT, List.of(ModbusConst.SOCKET_MEASUREMENT));
+
+        assertThat(reads.size(), equalTo(1));
+        assertThat(reads.getFirst().address(), equalTo(300));
+        assertThat(reads.getFirst().count(), equalTo(122));
+    }
+}
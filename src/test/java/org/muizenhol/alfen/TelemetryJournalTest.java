@@ -0,0 +1,87 @@
+package org.muizenhol.alfen;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TelemetryJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testAppendPoll() throws Exception {
+        try (TelemetryJournal journal = TelemetryJournal.open(dir.resolve("j"), 1024)) {
+            journal.append("a/b", Buffer.buffer("{\"x\":1}"), 1000);
+            journal.append("a/c", Buffer.buffer("2"), 2000);
+
+            TelemetryJournal.Entry first = journal.poll();
+            assertThat(first.topic(), equalTo("a/b"));
+            assertThat(first.payload().toString(), equalTo("{\"x\":1}"));
+            assertThat(first.timestampMs(), equalTo(1000L));
+            assertThat(journal.poll().timestampMs(), equalTo(2000L));
+            assertThat(journal.poll(), nullValue());
+            assertThat(journal.pending(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        Path path = dir.resolve("j");
+        try (TelemetryJournal journal = TelemetryJournal.open(path, 1024)) {
+            journal.append("a", Buffer.buffer("1"), 1000);
+            journal.append("b", Buffer.buffer("2"), 2000);
+            journal.poll();
+        }
+        try (TelemetryJournal journal = TelemetryJournal.open(path, 1024)) {
+            TelemetryJournal.Entry entry = journal.poll();
+            assertThat(entry.topic(), equalTo("b"));
+            assertThat(entry.payload().toString(), equalTo("2"));
+            assertThat(journal.poll(), nullValue());
+        }
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        //room for exactly 2 records of 16 bytes
+        try (TelemetryJournal journal = TelemetryJournal.open(dir.resolve("j"), TelemetryJournal.HEADER + 32)) {
+            assertThat(journal.append("a", Buffer.buffer("1"), 1), equalTo(true));
+            assertThat(journal.append("b", Buffer.buffer("2"), 2), equalTo(true));
+            assertThat(journal.append("c", Buffer.buffer("3"), 3), equalTo(false));
+            assertThat(journal.dropped(), equalTo(1L));
+
+            //fully replayed, so there is room again
+            journal.poll();
+            journal.poll();
+            assertThat(journal.append("c", Buffer.buffer("3"), 3), equalTo(true));
+            assertThat(journal.poll().topic(), equalTo("c"));
+        }
+    }
+
+    @Test
+    public void testWithTimestamp() {
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("{\"x\":1}"), 5).toString(),
+                equalTo("{\"timestamp\":5,\"x\":1}"));
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("{}"), 5).toString(),
+                equalTo("{\"timestamp\":5}"));
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("{\"timestamp\":1}"), 5).toString(),
+                equalTo("{\"timestamp\":1}"));
+        //other values are wrapped
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("[1]"), 5).toString(),
+                equalTo("{\"timestamp\":5,\"value\":[1]}"));
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("230.5"), 5).toString(),
+                equalTo("{\"timestamp\":5,\"value\":230.5}"));
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("C2"), 5).toString(),
+                equalTo("{\"timestamp\":5,\"value\":\"C2\"}"));
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("NaN"), 5).toString(),
+                equalTo("{\"timestamp\":5,\"value\":\"NaN\"}"));
+        assertThat(TelemetryJournal.withTimestamp(Buffer.buffer("a\"b"), 5).toString(),
+                equalTo("{\"timestamp\":5,\"value\":\"a\\\"b\"}"));
+    }
+}
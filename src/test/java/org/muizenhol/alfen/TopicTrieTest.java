@@ -0,0 +1,58 @@
+package org.muizenhol.alfen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+public class TopicTrieTest {
+
+    private static List<String> match(TopicTrie<String> trie, String topic) {
+        List<String> result = new ArrayList<>();
+        trie.match(topic, (value, wildcards) -> result.add(value + wildcards));
+        return result;
+    }
+
+    @Test
+    public void testExact() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("a/b", "x");
+        trie.add("a/b", "y");
+        trie.add("a/c", "z");
+
+        assertThat(match(trie, "a/b"), contains("x[]", "y[]"));
+        assertThat(match(trie, "a"), empty());
+        assertThat(match(trie, "a/b/c"), empty());
+    }
+
+    @Test
+    public void testSingleLevel() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("alfen/set/dev/+/+", "set");
+        trie.add("alfen/set/+/1/mode", "mode");
+
+        assertThat(match(trie, "alfen/set/dev/1/mode"), containsInAnyOrder("set[1, mode]", "mode[dev]"));
+        assertThat(match(trie, "alfen/set/other/2/mode"), empty());
+        assertThat(match(trie, "alfen/set/dev/1"), empty());
+        assertThat(match(trie, "alfen/set/dev/1/mode/x"), empty());
+    }
+
+    @Test
+    public void testMultiLevel() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("sensor/#", "s");
+        trie.add("#", "all");
+
+        assertThat(match(trie, "sensor/a/b"), containsInAnyOrder("s[a/b]", "all[sensor/a/b]"));
+        //# includes the parent level
+        assertThat(match(trie, "sensor"), containsInAnyOrder("s[]", "all[sensor]"));
+        assertThat(match(trie, "other"), contains("all[other]"));
+        //wildcards at the first level don't match system topics
+        assertThat(match(trie, "$SYS/uptime"), empty());
+    }
+}
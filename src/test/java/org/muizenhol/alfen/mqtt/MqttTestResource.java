@@ -34,7 +34,8 @@ public class MqttTestResource implements QuarkusTestResourceLifecycleManager {
         return Map.of(
                 "mqtt.enabled", "true",
                 "mqtt.host", "127.0.0.1",
-                "mqtt.port", Integer.toString(PORT));
+                "mqtt.port", Integer.toString(PORT),
+                "mqtt.restart-delay", "PT0.2s");
     }
 
     @Override
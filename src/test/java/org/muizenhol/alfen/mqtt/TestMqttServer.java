@@ -115,6 +115,13 @@ public class TestMqttServer {
         }
     }
 
+    /**
+     * Number of clients connected since the last cleanup
+     */
+    public int connections() {
+        return endpoints.size();
+    }
+
     public void cleanup() {
         LOG.info("Cleanup");
         try {